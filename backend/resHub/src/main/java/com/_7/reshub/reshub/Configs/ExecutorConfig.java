@@ -0,0 +1,90 @@
+package com._7.reshub.reshub.Configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    // discovery.lookup.threads in application.properties
+    @Value("${discovery.lookup.threads:8}")
+    private int discoveryLookupThreads;
+
+    // discovery.lookup.queue.capacity in application.properties
+    @Value("${discovery.lookup.queue.capacity:64}")
+    private int discoveryLookupQueueCapacity;
+
+    // dynamo.prefetch.threads in application.properties
+    @Value("${dynamo.prefetch.threads:4}")
+    private int dynamoPrefetchThreads;
+
+    // chats.sideeffects.threads in application.properties
+    @Value("${chats.sideeffects.threads:4}")
+    private int chatSideEffectThreads;
+
+    /*
+     * Bounded pool for the DynamoDB reads a discovery request fans out. When the queue is full new
+     * reads are rejected rather than run on the request thread, which would not honour the lookup
+     * deadline; ProfileService fails the request or drops the optional read instead.
+     */
+    @Bean(name = "discoveryLookupExecutor", destroyMethod = "shutdown")
+    public ExecutorService discoveryLookupExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                discoveryLookupThreads, discoveryLookupThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(discoveryLookupQueueCapacity),
+                namedThreads("discovery-lookup-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /*
+     * Small pool that fetches the next Query/Scan page while the caller works through the current
+     * one (see DynamoPages). When it is saturated the prefetch is skipped and the caller fetches the
+     * page itself once it needs it.
+     */
+    @Bean(name = "dynamoPrefetchExecutor", destroyMethod = "shutdown")
+    public ExecutorService dynamoPrefetchExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                dynamoPrefetchThreads, dynamoPrefetchThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(dynamoPrefetchThreads * 4),
+                namedThreads("dynamo-prefetch-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /*
+     * Runs the post-write steps of createMessage (see ChatSideEffectPipeline). Scheduled so a
+     * failed step can be retried after a backoff without holding a thread; the pipeline bounds how
+     * many steps are queued.
+     */
+    @Bean(name = "chatSideEffectExecutor", destroyMethod = "shutdown")
+    public ScheduledExecutorService chatSideEffectExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                chatSideEffectThreads, namedThreads("chat-side-effects-"));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
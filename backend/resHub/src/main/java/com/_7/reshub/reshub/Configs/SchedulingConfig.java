@@ -0,0 +1,12 @@
+package com._7.reshub.reshub.Configs;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/*
+ * Turns on @Scheduled methods (background jobs such as the discovery feed refill).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
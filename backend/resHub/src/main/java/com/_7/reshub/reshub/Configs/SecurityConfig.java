@@ -14,6 +14,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import jakarta.servlet.DispatcherType;
 //import jakarta.servlet.Filter;
 
 
@@ -31,6 +32,9 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             // Configure request authorization rules
             .authorizeHttpRequests(auth -> auth
+                // Async dispatches of an already authorized request (streamed responses such as
+                // /api/getProfiles/stream and /api/events) carry no token
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers(new AntPathRequestMatcher("/api/login")).permitAll() // Allow /api/login
                 .requestMatchers(new AntPathRequestMatcher("/api/signup")).permitAll() // Allow /api/signup
                 .requestMatchers(new AntPathRequestMatcher("/api/forgot-password")).permitAll() // Allow /api/forgot-password
@@ -0,0 +1,39 @@
+package com._7.reshub.reshub.Controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com._7.reshub.reshub.Services.EventBroker;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api")
+public class EventController {
+
+    @Autowired
+    private EventBroker eventBroker;
+
+    /*
+     * Opens a server-sent event stream for the authenticated user (the user id in the bearer
+     * token). Replaces polling /api/users/notification and getMessages.
+     *
+     * Events:
+     * message: { chatId, createdAt, userId, name, text } to both participants of the chat
+     * match: { userId, matchUserId, chatId } to both matched users
+     * notification: { type, message, createdAt } to the notified user
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(Principal principal) {
+        if (principal == null || principal.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing bearer token");
+        }
+        return eventBroker.subscribe(principal.getName());
+    }
+}
@@ -0,0 +1,29 @@
+package com._7.reshub.reshub.Controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com._7.reshub.reshub.Services.LatencyMetrics;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class MetricsController {
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    /*
+     * Returns the in-process latency timers and counters of this instance.
+     * 
+     * @returns { timers: { name: { count, meanMs, p50Ms, p95Ms, p99Ms, maxMs } }, counters: { name: value }, gauges: { name: value } }
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(latencyMetrics.snapshot());
+    }
+}
@@ -1,22 +1,37 @@
 package com._7.reshub.reshub.Controllers;
 
 import com._7.reshub.reshub.Models.Requests.ProfileRequest;
+import com._7.reshub.reshub.Services.DiscoveryCatalogService;
+import com._7.reshub.reshub.Services.FeedMaterializer;
+import com._7.reshub.reshub.Services.LatencyMetrics;
+import com._7.reshub.reshub.Services.ProfileAttributeIndex;
+import com._7.reshub.reshub.Services.ProfileCache;
 import com._7.reshub.reshub.Services.ProfileService;
-import com._7.reshub.reshub.Services.SwipeService;
+import com._7.reshub.reshub.Models.DiscoveryCursor;
+import com._7.reshub.reshub.Models.DiscoveryLookups;
 import com._7.reshub.reshub.Models.Profile;
+import com._7.reshub.reshub.Models.ProfileCard;
+import com._7.reshub.reshub.Models.ProfilePage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -26,6 +41,9 @@ import java.util.stream.Collectors;
 public class ProfileController {
 
     private static final Logger logger = LoggerFactory.getLogger(ProfileController.class);
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int STREAM_FLUSH_INTERVAL = 20;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     @Autowired
     private DynamoDbClient dynamoDbClient;
@@ -34,7 +52,19 @@ public class ProfileController {
     private ProfileService profileService;
 
     @Autowired
-    private SwipeService swipeService;
+    private DiscoveryCatalogService discoveryCatalogService;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FeedMaterializer feedMaterializer;
+
+    @Autowired
+    private ProfileCache profileCache;
 
     /*
      * GET endpoint to retrieve information for a given user.
@@ -161,6 +191,8 @@ public class ProfileController {
                 .item(item)
                 .build();
         dynamoDbClient.putItem(putItemRequest);
+        profileCache.put(item);
+        discoveryCatalogService.upsert(item);
 
         return ResponseEntity.ok("Profile created successfully");
     }
@@ -196,43 +228,204 @@ public class ProfileController {
 
     /**
      * GET endpoint that returns the list of all profiles filtered based on gender
-     * and sorted on if they've liked the current user (primary) and how recently active the profile is (secondary).
+     * and sorted on if they've liked the current user (primary) and how recently active the profile is
+     * or how compatible it is with the current user (secondary).
      * 
      * @param userId            The user currently looking at the page (will not be
      *                          included in result)
      * @param genderFilter      The gender filter to filter profiles by.
      * @param filterOutSwipedOn If true, filters out userIds that the current user
      *                          has already swiped on
+     * @param limit             Optional page size. When set, only one page is returned
+     *                          as { profiles, nextCursor }.
+     * @param cursor            Optional nextCursor from the previous page.
+     * @param sort              "recent" (default) orders by last time active, "compatibility"
+     *                          orders by roommate compatibility with the current user.
+     *                          Profiles that liked the current user come first in both.
+     * @param params            Any of smokingStatus, sleepSchedule, cleanlinessLevel,
+     *                          noiseLevel, hasPets, dietaryPreference, residence and
+     *                          graduationYear can be passed to filter on that trait.
+     *                          Repeat the parameter or separate values with commas to
+     *                          accept several values.
      * @return A ResponseEntity containing the list of filtered profiles with HTTP
      *         200,
      *         or an empty list if no profiles match the filter.
      */
 
      @GetMapping("/getProfiles")
-     public ResponseEntity<?> getProfiles(@RequestParam String userId, @RequestParam String genderFilter, @RequestParam boolean filterOutSwipedOn) {
+     public ResponseEntity<?> getProfiles(@RequestParam String userId, @RequestParam String genderFilter, @RequestParam boolean filterOutSwipedOn,
+                                          @RequestParam(required = false) Integer limit, @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = DiscoveryCursor.SORT_RECENT) String sort,
+                                          @RequestParam MultiValueMap<String, String> params) {
          try {
-             List<Profile> profiles = profileService.doGetProfiles(userId, genderFilter, filterOutSwipedOn);
- 
-             if (filterOutSwipedOn) {
-                 List<String> swipedUserIds = swipeService.doGetAllSwipedOn(userId);
- 
-                 profiles = profiles.stream()
-                 .filter(profile -> {
-                                 Object userIdObj = profile.getUserId();
-                                 return userIdObj != null && !swipedUserIds.contains(userIdObj.toString());
-                         })
-                         .collect(Collectors.toList());
+             boolean byCompatibility = DiscoveryCursor.SORT_COMPATIBILITY.equals(sort);
+             if (!byCompatibility && !DiscoveryCursor.SORT_RECENT.equals(sort)) {
+                 return ResponseEntity.badRequest().body(Map.of("error", "sort must be recent or compatibility"));
+             }
+
+             DiscoveryCursor discoveryCursor = null;
+             if (limit != null) {
+                 if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                     return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE));
+                 }
+                 try {
+                     discoveryCursor = (cursor == null || cursor.isEmpty()) ? null : DiscoveryCursor.decode(cursor);
+                 } catch (IllegalArgumentException e) {
+                     return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+                 }
+                 if (discoveryCursor != null && !discoveryCursor.getSort().equals(sort)) {
+                     return ResponseEntity.badRequest().body(Map.of("error", "cursor was issued for sort " + discoveryCursor.getSort()));
+                 }
+             }
+
+             long start = System.nanoTime();
+             DiscoveryLookups lookups = profileService.doGetDiscoveryLookups(userId, filterOutSwipedOn);
+             latencyMetrics.recordSince("discovery.lookups", start);
+
+             // Blocked and (if filterOutSwipedOn) swiped on users are already left out
+             BitSet candidates = profileService.doGetCandidates(userId, genderFilter, getAttributeFilters(params), lookups);
+
+             if (limit != null) {
+                 ProfilePage page = byCompatibility
+                         ? profileService.doGetCompatibilityPage(userId, candidates, limit, discoveryCursor, lookups)
+                         : profileService.doGetProfilePage(candidates, limit, discoveryCursor, lookups);
+                 return ResponseEntity.ok(page);
              }
  
-             profiles = profileService.doSortProfiles(userId, profiles);
+             List<ProfileCard> sorted = byCompatibility
+                     ? profileService.doRankProfiles(userId, candidates, lookups)
+                     : profileService.doSortProfiles(candidates, lookups);
  
-             return ResponseEntity.ok(profiles.isEmpty() ? Collections.emptyList() : profiles);
+             return ResponseEntity.ok(sorted.isEmpty() ? Collections.emptyList() : sorted);
          } catch (Exception e) {
              e.printStackTrace();
              return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                      .body(Map.of("error", e.getMessage()));
          }
      }
+
+     /**
+      * GET endpoint that streams the same deck as /getProfiles as newline-delimited JSON, one
+      * card per line, in the same order. Cards are written and flushed as they are ranked, so the
+      * client can show the first ones before the rest of the deck is ready.
+      * 
+      * Takes the same parameters as /getProfiles except limit and cursor. Invalid parameters and
+      * failures before the first card return an error map like /getProfiles; a failure after
+      * that ends the stream early.
+      *
+      * The return type has to name StreamingResponseBody: Spring picks the streaming handler from
+      * the declared type, and a ResponseEntity<?> would be serialized as JSON instead.
+      */
+     @GetMapping("/getProfiles/stream")
+     public ResponseEntity<StreamingResponseBody> streamProfiles(@RequestParam String userId, @RequestParam String genderFilter, @RequestParam boolean filterOutSwipedOn,
+                                             @RequestParam(defaultValue = DiscoveryCursor.SORT_RECENT) String sort,
+                                             @RequestParam MultiValueMap<String, String> params) {
+         try {
+             boolean byCompatibility = DiscoveryCursor.SORT_COMPATIBILITY.equals(sort);
+             if (!byCompatibility && !DiscoveryCursor.SORT_RECENT.equals(sort)) {
+                 return streamError(HttpStatus.BAD_REQUEST, "sort must be recent or compatibility");
+             }
+
+             DiscoveryLookups lookups = profileService.doGetDiscoveryLookups(userId, filterOutSwipedOn);
+             BitSet candidates = profileService.doGetCandidates(userId, genderFilter, getAttributeFilters(params), lookups);
+             Iterator<ProfileCard> deck = profileService.doIterateProfiles(userId, candidates, byCompatibility, lookups);
+
+             StreamingResponseBody body = outputStream -> {
+                 int written = 0;
+                 while (deck.hasNext()) {
+                     outputStream.write(objectMapper.writeValueAsBytes(deck.next()));
+                     outputStream.write('\n');
+
+                     // Flush the first card right away, then in small batches
+                     if (++written == 1 || written % STREAM_FLUSH_INTERVAL == 0) {
+                         outputStream.flush();
+                     }
+                 }
+                 outputStream.flush();
+             };
+
+             return ResponseEntity.ok()
+                     .contentType(NDJSON)
+                     .body(body);
+         } catch (Exception e) {
+             e.printStackTrace();
+             return streamError(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+         }
+     }
+
+     /*
+      * The same { error } map the other endpoints return, written through a StreamingResponseBody.
+      */
+     private ResponseEntity<StreamingResponseBody> streamError(HttpStatus status, String message) {
+         Map<String, String> error = Collections.singletonMap("error", message);
+         return ResponseEntity.status(status)
+                 .contentType(MediaType.APPLICATION_JSON)
+                 .body(outputStream -> outputStream.write(objectMapper.writeValueAsBytes(error)));
+     }
+
+     /**
+      * GET endpoint that returns the next cards of the user's precomputed discovery feed. The feed
+      * holds the same deck as /getProfiles with filterOutSwipedOn=true, ranked ahead of time and
+      * refilled in the background, so this is much cheaper than /getProfiles. Cards stay at the
+      * front of the feed until the user swipes on them.
+      * 
+      * @param userId       The user currently looking at the page
+      * @param genderFilter The gender filter to filter profiles by.
+      * @param count        How many cards to return (default 10, at most 100).
+      * @param sort         "recent" (default) or "compatibility", as in /getProfiles.
+      * @param params       The same trait filters as /getProfiles.
+      * @return A ResponseEntity containing the next cards with HTTP 200
+      */
+     @GetMapping("/getFeed")
+     public ResponseEntity<?> getFeed(@RequestParam String userId, @RequestParam String genderFilter,
+                                      @RequestParam(defaultValue = "10") int count,
+                                      @RequestParam(defaultValue = DiscoveryCursor.SORT_RECENT) String sort,
+                                      @RequestParam MultiValueMap<String, String> params) {
+         try {
+             boolean byCompatibility = DiscoveryCursor.SORT_COMPATIBILITY.equals(sort);
+             if (!byCompatibility && !DiscoveryCursor.SORT_RECENT.equals(sort)) {
+                 return ResponseEntity.badRequest().body(Map.of("error", "sort must be recent or compatibility"));
+             }
+             if (count < 1 || count > MAX_PAGE_SIZE) {
+                 return ResponseEntity.badRequest().body(Map.of("error", "count must be between 1 and " + MAX_PAGE_SIZE));
+             }
+
+             long start = System.nanoTime();
+             List<ProfileCard> cards = feedMaterializer.peek(userId, genderFilter, getAttributeFilters(params), byCompatibility, count);
+             latencyMetrics.recordSince("discovery.feed.read", start);
+
+             return ResponseEntity.ok(cards);
+         } catch (Exception e) {
+             e.printStackTrace();
+             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                     .body(Map.of("error", e.getMessage()));
+         }
+     }
+
+     //helper method that picks the trait filters out of the request parameters
+     private Map<String, List<String>> getAttributeFilters(MultiValueMap<String, String> params) {
+         Map<String, List<String>> filters = new HashMap<>();
+
+         for (String attribute : ProfileAttributeIndex.ATTRIBUTES.keySet()) {
+             // gender is driven by genderFilter
+             if (attribute.equals("gender") || !params.containsKey(attribute)) {
+                 continue;
+             }
+
+             List<String> values = params.get(attribute).stream()
+                     .flatMap(value -> Arrays.stream(value.split(",")))
+                     .map(String::trim)
+                     .filter(value -> !value.isEmpty())
+                     .collect(Collectors.toList());
+
+             if (!values.isEmpty()) {
+                 filters.put(attribute, values);
+             }
+         }
+
+         return filters;
+     }
+
      /**
       * PUT endpoint that updates a user's profile information.
       * 
@@ -325,9 +518,12 @@ public class ProfileController {
                 .updateExpression(updateExpression.toString())
                 .expressionAttributeNames(expressionAttributeNames)
                 .expressionAttributeValues(attributeValues)
+                .returnValues(ReturnValue.ALL_NEW)
                 .build();
 
-            dynamoDbClient.updateItem(updateItemRequest);
+            UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
+            profileCache.put(updateItemResponse.attributes());
+            discoveryCatalogService.upsert(updateItemResponse.attributes());
 
             return ResponseEntity.ok("Profile updated successfully");
         } catch (Exception e) {
@@ -409,9 +605,12 @@ public class ProfileController {
                 .key(key)
                 .updateExpression("SET profilePicUrl = :profilePicUrl")
                 .expressionAttributeValues(attributeValues)
+                .returnValues(ReturnValue.ALL_NEW)
                 .build();
 
-                dynamoDbClient.updateItem(updateItemRequest);
+                UpdateItemResponse updateItemResponse = dynamoDbClient.updateItem(updateItemRequest);
+                profileCache.put(updateItemResponse.attributes());
+                discoveryCatalogService.upsert(updateItemResponse.attributes());
 
                 return ResponseEntity.ok("Profile picture updated successfully");
         } catch (Exception e) {
@@ -453,6 +652,8 @@ public ResponseEntity<?> deleteProfile(@RequestParam String userId) {
             .build();
         
         dynamoDbClient.deleteItem(deleteItemRequest);
+        profileCache.invalidate(userId);
+        discoveryCatalogService.remove(userId);
 
         return ResponseEntity.ok(Map.of("message", "Profile deleted successfully"));
     } catch (Exception e) {
@@ -509,6 +710,8 @@ public ResponseEntity<?> deleteProfile(@RequestParam String userId) {
 
         try {
                 profileService.doAddToBlockedUsers(blockerId, blockedId);
+                // Same as a swipe as far as the blocker's feed is concerned
+                feedMaterializer.onSwipe(blockerId, blockedId);
                 return ResponseEntity.ok("Blocked successfully");
         } catch (Exception e) {
                 e.printStackTrace();
@@ -9,6 +9,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com._7.reshub.reshub.Services.FeedMaterializer;
 import com._7.reshub.reshub.Services.SwipeService;
 
 import java.time.Instant;
@@ -28,6 +29,9 @@ public class SwipeController {
     @Autowired
     private SwipeService swipeService;
 
+    @Autowired
+    private FeedMaterializer feedMaterializer;
+
     /*
      * Should be called when a user swipes left on another user's card
      * 
@@ -70,6 +74,8 @@ public class SwipeController {
         if (response.contains("Error:")) {
             try {
                 swipeService.doRollbackSwipe(userId, swipedOnUserId, "r");
+                // The rolled back user has to be able to show up in the feed again
+                feedMaterializer.invalidate(userId);
             } catch (Exception rollbackException) {
                 rollbackException.printStackTrace();
                 return new ResponseEntity<>("Error occurred during rollback.", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -129,6 +135,7 @@ public class SwipeController {
 
         try {
             swipeService.doCreateSwipe(userId, swipedOnUserId, direction, timestamp, expirationTimestamp);
+            feedMaterializer.onSwipe(userId, swipedOnUserId);
             return (direction == "l" ? "Left" : "Right") + " swipe recorded successfully!";
         } catch (Exception e) {
             e.printStackTrace();
@@ -10,6 +10,8 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import com._7.reshub.reshub.Models.InboxEntry;
+import com._7.reshub.reshub.Models.MessagePage;
 import com._7.reshub.reshub.Services.UserService;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
@@ -21,6 +23,9 @@ import java.util.Map;
 @RequestMapping("/api/users")
 public class UserController {
 
+    // Largest page getMessages will return when paging
+    private static final int MAX_MESSAGE_PAGE_SIZE = 100;
+
     @Autowired
     private UserService userService;
 
@@ -130,6 +135,27 @@ public class UserController {
         }
     }
 
+    /*
+     * GET endpoint for the chat list screen: every chat of the user, most recent first, with the
+     * other user, last message, sender and unread count. Replaces getChats followed by one
+     * getChatDetails call per chat.
+     *
+     * @params
+     * userId: The id of the user whose chats are to be retrieved
+     *
+     * @return List of inbox entries
+     */
+    @GetMapping("/getInbox")
+    public ResponseEntity<?> getInbox(@RequestParam String userId) {
+        try {
+            List<InboxEntry> inbox = userService.getInbox(userId);
+            return ResponseEntity.ok(inbox);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/createChat")
     public String createChat(@RequestParam String userId1, @RequestParam String userId2) {
         try {
@@ -171,9 +197,31 @@ public class UserController {
         return ResponseEntity.ok().build();
     }
 
+    /*
+     * GET endpoint for a chat's messages, newest first.
+     *
+     * @params
+     * chatId: The id of the chat
+     * limit: (optional) Page size. When given, returns {messages, nextCursor} instead of the
+     * whole history
+     * before: (optional) nextCursor from the previous page, to load older messages
+     *
+     * @return The messages, or one page of them
+     */
     @GetMapping("/getMessages")
-    public ResponseEntity<?> getMessages(@RequestParam String chatId) {
+    public ResponseEntity<?> getMessages(@RequestParam String chatId,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) String before) {
         try {
+            if (limit != null) {
+                if (limit < 1 || limit > MAX_MESSAGE_PAGE_SIZE) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "limit must be between 1 and " + MAX_MESSAGE_PAGE_SIZE));
+                }
+                MessagePage page = userService.getMessagePage(chatId,
+                        limit, (before == null || before.isEmpty()) ? null : before);
+                return ResponseEntity.ok(page);
+            }
+
             List<Map<String, String>> messages = userService.getMessages(chatId);
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
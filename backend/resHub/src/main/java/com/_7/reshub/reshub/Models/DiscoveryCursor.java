@@ -0,0 +1,99 @@
+package com._7.reshub.reshub.Models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Position of the last profile returned on a discovery page. The client treats the encoded
+ * form as an opaque token and sends it back to get the next page.
+ *
+ * sortValue is the secondary sort key of the ordering the page was built with: the profile's last
+ * active second (as ActivityIndex packs it) for "recent" and the compatibility score for
+ * "compatibility". Neither depends on catalog ordinals, which differ between instances and
+ * restarts; the server looks up userId's ordinal again to rebuild the exact position.
+ *
+ * servedLiked lists the users already returned from the liked-by section of a "recent" deck. That
+ * section is ordered by activity, which changes on every heartbeat, so a position in it would not
+ * be stable from one page to the next.
+ */
+public class DiscoveryCursor {
+    public static final String SORT_RECENT = "recent";
+    public static final String SORT_COMPATIBILITY = "compatibility";
+
+    private final String sort;
+    private final boolean isLiked;
+    private final long sortValue;
+    private final String userId;
+    private final List<String> servedLiked;
+
+    public DiscoveryCursor(String sort, boolean isLiked, long sortValue, String userId) {
+        this(sort, isLiked, sortValue, userId, Collections.emptyList());
+    }
+
+    public DiscoveryCursor(String sort, boolean isLiked, long sortValue, String userId, List<String> servedLiked) {
+        this.sort = sort;
+        this.isLiked = isLiked;
+        this.sortValue = sortValue;
+        this.userId = userId;
+        this.servedLiked = servedLiked;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public boolean getIsLiked() {
+        return isLiked;
+    }
+
+    public long getSortValue() {
+        return sortValue;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public List<String> getServedLiked() {
+        return servedLiked;
+    }
+
+    public String encode() {
+        // Ids are encoded on their own so they cannot clash with the separators
+        List<String> served = new ArrayList<>(servedLiked.size());
+        for (String id : servedLiked) {
+            served.add(Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8)));
+        }
+        String raw = sort + ":" + (isLiked ? "1" : "0") + ":" + sortValue + ":" + String.join(",", served) + ":" + userId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+     * Parses a token produced by encode(). Throws IllegalArgumentException if the token
+     * was not produced by this server.
+     */
+    public static DiscoveryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 5);
+            if (parts.length != 5
+                    || !(parts[0].equals(SORT_RECENT) || parts[0].equals(SORT_COMPATIBILITY))
+                    || !(parts[1].equals("0") || parts[1].equals("1"))) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+
+            List<String> servedLiked = new ArrayList<>();
+            if (!parts[3].isEmpty()) {
+                for (String id : parts[3].split(",")) {
+                    servedLiked.add(new String(Base64.getUrlDecoder().decode(id), StandardCharsets.UTF_8));
+                }
+            }
+            return new DiscoveryCursor(parts[0], parts[1].equals("1"), Long.parseLong(parts[2]), parts[4], servedLiked);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com._7.reshub.reshub.Models;
+
+import java.util.BitSet;
+
+/*
+ * The per-request swipe data discovery needs, as catalog ordinals: the users the viewer already
+ * swiped on (empty unless requested) and the users who swiped right on the viewer.
+ */
+public class DiscoveryLookups {
+    private final BitSet swipedOn;
+    private final BitSet likedBy;
+
+    public DiscoveryLookups(BitSet swipedOn, BitSet likedBy) {
+        this.swipedOn = swipedOn;
+        this.likedBy = likedBy;
+    }
+
+    public BitSet getSwipedOn() {
+        return swipedOn;
+    }
+
+    public BitSet getLikedBy() {
+        return likedBy;
+    }
+}
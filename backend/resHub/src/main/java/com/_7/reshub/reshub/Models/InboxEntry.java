@@ -0,0 +1,66 @@
+package com._7.reshub.reshub.Models;
+
+/*
+ * One row of the chat list: the chat, who it is with and what the user has not read yet.
+ */
+public class InboxEntry {
+    private final String chatId;
+    private final String otherUserId;
+    private final String otherUserName;
+    private final String otherUserProfilePicUrl;
+    private final String lastMessage;
+    private final String lastMessageSender;
+    private final String updatedAt;
+    private final int unreadCount;
+
+    public InboxEntry(
+            String chatId,
+            String otherUserId,
+            String otherUserName,
+            String otherUserProfilePicUrl,
+            String lastMessage,
+            String lastMessageSender,
+            String updatedAt,
+            int unreadCount) {
+        this.chatId = chatId;
+        this.otherUserId = otherUserId;
+        this.otherUserName = otherUserName;
+        this.otherUserProfilePicUrl = otherUserProfilePicUrl;
+        this.lastMessage = lastMessage;
+        this.lastMessageSender = lastMessageSender;
+        this.updatedAt = updatedAt;
+        this.unreadCount = unreadCount;
+    }
+
+    public String getChatId() {
+        return chatId;
+    }
+
+    public String getOtherUserId() {
+        return otherUserId;
+    }
+
+    public String getOtherUserName() {
+        return otherUserName;
+    }
+
+    public String getOtherUserProfilePicUrl() {
+        return otherUserProfilePicUrl;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public String getLastMessageSender() {
+        return lastMessageSender;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+}
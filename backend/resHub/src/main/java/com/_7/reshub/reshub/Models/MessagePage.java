@@ -0,0 +1,26 @@
+package com._7.reshub.reshub.Models;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * One page of a chat's history, newest message first. nextCursor is the createdAt to pass as
+ * before= for the next (older) page, or null once the start of the chat is reached.
+ */
+public class MessagePage {
+    private final List<Map<String, String>> messages;
+    private final String nextCursor;
+
+    public MessagePage(List<Map<String, String>> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Map<String, String>> getMessages() {
+        return messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,157 @@
+package com._7.reshub.reshub.Models;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ * Read model for the discovery deck: only the fields shown on a swipe card. The full Profile
+ * (email, allergies, roommate preferences, ...) is still fetched from /api/getProfile when a
+ * card is opened.
+ */
+public class ProfileCard {
+    private final String userId;
+    private final String fullName;
+    private final String gender;
+    private final String major;
+    private final String minor;
+    private final int age;
+    private final String residence;
+    private final List<String> hobbies;
+    private final String graduationYear;
+    private final String bio;
+    private final Instant lastTimeActive;
+    private final String profilePicUrl;
+
+    // Own traits shown on the card
+    private final String smokingStatus;
+    private final String cleanlinessLevel;
+    private final String sleepSchedule;
+    private final String guestFrequency;
+    private final String hasPets;
+    private final String noiseLevel;
+    private final String sharingCommonItems;
+    private final String dietaryPreference;
+
+    public ProfileCard(
+            String userId,
+            String fullName,
+            String gender,
+            String major,
+            String minor,
+            int age,
+            String residence,
+            List<String> hobbies,
+            String graduationYear,
+            String bio,
+            Instant lastTimeActive,
+            String profilePicUrl,
+            String smokingStatus,
+            String cleanlinessLevel,
+            String sleepSchedule,
+            String guestFrequency,
+            String hasPets,
+            String noiseLevel,
+            String sharingCommonItems,
+            String dietaryPreference) {
+        this.userId = userId;
+        this.fullName = fullName;
+        this.gender = gender;
+        this.major = major;
+        this.minor = minor;
+        this.age = age;
+        this.residence = residence;
+        this.hobbies = hobbies;
+        this.graduationYear = graduationYear;
+        this.bio = bio;
+        this.lastTimeActive = lastTimeActive;
+        this.profilePicUrl = profilePicUrl;
+        this.smokingStatus = smokingStatus;
+        this.cleanlinessLevel = cleanlinessLevel;
+        this.sleepSchedule = sleepSchedule;
+        this.guestFrequency = guestFrequency;
+        this.hasPets = hasPets;
+        this.noiseLevel = noiseLevel;
+        this.sharingCommonItems = sharingCommonItems;
+        this.dietaryPreference = dietaryPreference;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public String getMajor() {
+        return major;
+    }
+
+    public String getMinor() {
+        return minor;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public String getResidence() {
+        return residence;
+    }
+
+    public List<String> getHobbies() {
+        return hobbies;
+    }
+
+    public String getGraduationYear() {
+        return graduationYear;
+    }
+
+    public String getBio() {
+        return bio;
+    }
+
+    public Instant getLastTimeActive() {
+        return lastTimeActive;
+    }
+
+    public String getProfilePicUrl() {
+        return profilePicUrl;
+    }
+
+    public String getSmokingStatus() {
+        return smokingStatus;
+    }
+
+    public String getCleanlinessLevel() {
+        return cleanlinessLevel;
+    }
+
+    public String getSleepSchedule() {
+        return sleepSchedule;
+    }
+
+    public String getGuestFrequency() {
+        return guestFrequency;
+    }
+
+    public String getHasPets() {
+        return hasPets;
+    }
+
+    public String getNoiseLevel() {
+        return noiseLevel;
+    }
+
+    public String getSharingCommonItems() {
+        return sharingCommonItems;
+    }
+
+    public String getDietaryPreference() {
+        return dietaryPreference;
+    }
+}
@@ -0,0 +1,24 @@
+package com._7.reshub.reshub.Models;
+
+import java.util.List;
+
+/*
+ * One page of discovery results. nextCursor is null once there are no more profiles.
+ */
+public class ProfilePage {
+    private final List<ProfileCard> profiles;
+    private final String nextCursor;
+
+    public ProfilePage(List<ProfileCard> profiles, String nextCursor) {
+        this.profiles = profiles;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ProfileCard> getProfiles() {
+        return profiles;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Utils.DynamoPages;
 
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +28,18 @@ public class AccountService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private DiscoveryCatalogService discoveryCatalogService;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private ChatOrderIndex chatOrderIndex;
+
+    @Autowired
+    private ProfileCache profileCache;
+
     /**
      * Completely deletes a user account and all associated data
      * 
@@ -55,6 +68,7 @@ public class AccountService {
                     // If we couldn't find the other user, just delete the chat directly
                     deleteChat(chatId);
                     deleteMessagesByChatId(chatId);
+                    chatOrderIndex.removeChat(chatId);
                 }
             }
             
@@ -91,6 +105,8 @@ public class AccountService {
             .build();
             
         dynamoDbClient.deleteItem(deleteRequest);
+        profileCache.invalidate(userId);
+        discoveryCatalogService.remove(userId);
         logger.info("Deleted user profile for userId: " + userId);
     }
     
@@ -139,10 +155,8 @@ public class AccountService {
             ))
             .build();
         
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
-        
         // Delete each message
-        for (Map<String, AttributeValue> message : queryResponse.items()) {
+        DynamoPages.query(dynamoDbClient, queryRequest).forEach(message -> {
             Map<String, AttributeValue> key = new HashMap<>();
             key.put("chatId", message.get("chatId"));
             key.put("createdAt", message.get("createdAt"));
@@ -153,8 +167,9 @@ public class AccountService {
                 .build();
                 
             dynamoDbClient.deleteItem(deleteRequest);
-        }
+        });
         
+        recentMessageCache.invalidate(chatId);
         logger.info("Deleted all messages for chat: " + chatId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com._7.reshub.reshub.Services;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/*
+ * Profiles ordered by last time active, most recent first, kept up to date as activity comes in.
+ *
+ * Each profile has one packed key: (last active epoch second + 1) in the high bits and its catalog
+ * ordinal in the low ORDINAL_BITS. Keys are unique, sort by recency with the ordinal as tie-break,
+ * and identify the profile on their own, so discovery can walk the skip list from any position
+ * and stop as soon as a page is full. Profiles that were never active get second 0 and sort last.
+ *
+ * Walking is lock-free. set and clear must be called under DiscoveryCatalogService's write lock,
+ * keyOf under its read lock.
+ */
+public class ActivityIndex {
+
+    private static final int ORDINAL_BITS = 24;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+    private static final long NO_KEY = -1;
+
+    private final ConcurrentSkipListSet<Long> keys = new ConcurrentSkipListSet<>(Comparator.reverseOrder());
+    private long[] keysByOrdinal = new long[0];
+
+    /*
+     * Moves the profile at the given ordinal to its new last active time.
+     */
+    public void set(int ordinal, Instant lastActive) {
+        if (ordinal > ORDINAL_MASK) {
+            throw new IllegalStateException("Activity index is full at ordinal " + ordinal);
+        }
+        ensureCapacity(ordinal + 1);
+
+        long key = key(lastActive, ordinal);
+        long oldKey = keysByOrdinal[ordinal];
+        if (oldKey == key) {
+            return;
+        }
+
+        // Add before removing so a concurrent walk never misses the profile entirely
+        keys.add(key);
+        if (oldKey != NO_KEY) {
+            keys.remove(oldKey);
+        }
+        keysByOrdinal[ordinal] = key;
+    }
+
+    /*
+     * Removes the profile at the given ordinal.
+     */
+    public void clear(int ordinal) {
+        if (ordinal >= keysByOrdinal.length || keysByOrdinal[ordinal] == NO_KEY) {
+            return;
+        }
+
+        keys.remove(keysByOrdinal[ordinal]);
+        keysByOrdinal[ordinal] = NO_KEY;
+    }
+
+    /*
+     * Returns the current key of the profile at the given ordinal, or -1 if it is not indexed.
+     */
+    public long keyOf(int ordinal) {
+        return ordinal < keysByOrdinal.length ? keysByOrdinal[ordinal] : NO_KEY;
+    }
+
+    /*
+     * Returns the keys strictly less recent than the given key, most recent first. Pass
+     * Long.MAX_VALUE to start from the most recently active profile. The iterator is weakly
+     * consistent: a profile whose activity changes during the walk may be seen at its old
+     * position, its new one or (rarely) both.
+     */
+    public Iterator<Long> walk(long afterKey) {
+        return keys.tailSet(afterKey, false).iterator();
+    }
+
+    public static long key(Instant lastActive, int ordinal) {
+        long seconds = lastActive == null ? 0 : Math.max(0, lastActive.getEpochSecond() + 1);
+        return (seconds << ORDINAL_BITS) | ordinal;
+    }
+
+    public static int ordinalOf(long key) {
+        return (int) (key & ORDINAL_MASK);
+    }
+
+    /*
+     * The packed last active second of a key, which unlike the whole key means the same thing
+     * on every instance.
+     */
+    public static long secondsOf(long key) {
+        return key >>> ORDINAL_BITS;
+    }
+
+    /*
+     * Rebuilds a key from secondsOf and the profile's ordinal on this instance.
+     */
+    public static long key(long seconds, int ordinal) {
+        return (seconds << ORDINAL_BITS) | ordinal;
+    }
+
+    private void ensureCapacity(int size) {
+        if (keysByOrdinal.length >= size) {
+            return;
+        }
+
+        int oldSize = keysByOrdinal.length;
+        keysByOrdinal = Arrays.copyOf(keysByOrdinal, Math.max(size, Math.max(16, oldSize * 2)));
+        Arrays.fill(keysByOrdinal, oldSize, keysByOrdinal.length, NO_KEY);
+    }
+}
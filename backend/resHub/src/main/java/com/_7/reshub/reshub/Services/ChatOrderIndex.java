@@ -0,0 +1,229 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Utils.DynamoBatches;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
+/*
+ * Each active user's chats ordered by updatedAt, newest first, so listing conversations is a walk
+ * of an in-memory skip list instead of one GetItem per chat and a sort.
+ *
+ * A user's order is built the first time it is asked for: the chat ids come from their profile
+ * and every chat's updatedAt from one BatchGetItem. After that createChat adds to it and
+ * createMessage moves the chat to the front, for every loaded participant. Chats without an
+ * updatedAt (or whose item is gone) are left out, as getSortedChatIds always did. Users whose
+ * order is not read for chats.order.idle.ms are dropped and rebuilt on their next read.
+ *
+ * The index is local to this instance: writes that go through another instance only show up here
+ * once the user's order has gone idle and is rebuilt.
+ */
+@Service
+public class ChatOrderIndex {
+
+    // Newest first, chat id as tie-break so two chats with the same updatedAt are both kept
+    private static final Comparator<ChatKey> NEWEST_FIRST = Comparator
+            .comparing((ChatKey key) -> key.updatedAt, Comparator.reverseOrder())
+            .thenComparing(key -> key.chatId);
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // chats.order.idle.ms in application.properties
+    @Value("${chats.order.idle.ms:1800000}")
+    private long idleMillis;
+
+    private final Map<String, UserChats> users = new ConcurrentHashMap<>();
+    // chatId -> loaded users the chat belongs to, so writes know whose order to update
+    private final Map<String, Set<String>> usersByChat = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerGauges() {
+        latencyMetrics.registerGauge("chats.order.users", users::size);
+        latencyMetrics.registerGauge("chats.order.chats", usersByChat::size);
+    }
+
+    /*
+     * Returns the user's chat ids, most recently updated first. chatIds supplies the user's chat
+     * ids from their profile when the order has to be built.
+     */
+    public List<String> getChatIds(String userId, Supplier<Collection<String>> chatIds) {
+        UserChats userChats = users.computeIfAbsent(userId, id -> new UserChats());
+        userChats.lastRead = System.currentTimeMillis();
+
+        synchronized (userChats) {
+            if (!userChats.loaded) {
+                latencyMetrics.increment("chats.order.miss");
+                load(userId, userChats, chatIds.get());
+            } else {
+                latencyMetrics.increment("chats.order.hit");
+            }
+        }
+
+        List<String> ordered = new ArrayList<>(userChats.order.size());
+        for (ChatKey key : userChats.order) {
+            ordered.add(key.chatId);
+        }
+        return ordered;
+    }
+
+    /*
+     * Adds a new chat to the order of each participant whose order is loaded.
+     */
+    public void addChat(String chatId, Collection<String> participants, String updatedAt) {
+        for (String userId : participants) {
+            UserChats userChats = users.get(userId);
+            if (userChats != null) {
+                register(chatId, userId, userChats);
+                userChats.update(chatId, updatedAt);
+            }
+        }
+    }
+
+    /*
+     * Moves the chat up to the given updatedAt in every loaded participant's order. Older
+     * timestamps (a message that arrives out of order) do not move it back.
+     */
+    public void touch(String chatId, String updatedAt) {
+        Set<String> userIds = usersByChat.get(chatId);
+        if (userIds == null) {
+            return;
+        }
+        for (String userId : userIds) {
+            UserChats userChats = users.get(userId);
+            if (userChats != null) {
+                userChats.update(chatId, updatedAt);
+            }
+        }
+    }
+
+    /*
+     * Removes a deleted chat from every order it is in.
+     */
+    public void removeChat(String chatId) {
+        Set<String> userIds = usersByChat.remove(chatId);
+        if (userIds == null) {
+            return;
+        }
+        for (String userId : userIds) {
+            UserChats userChats = users.get(userId);
+            if (userChats != null) {
+                userChats.remove(chatId);
+            }
+        }
+    }
+
+    /*
+     * Drops the orders of users who have not listed their chats for chats.order.idle.ms.
+     */
+    @Scheduled(fixedDelayString = "${chats.order.sweep.interval.ms:60000}")
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        users.forEach((userId, userChats) -> {
+            if (userChats.lastRead <= idleSince && users.remove(userId, userChats)) {
+                for (String chatId : userChats.registered) {
+                    usersByChat.computeIfPresent(chatId, (id, userIds) -> {
+                        // Unless the user was loaded again in the meantime
+                        if (!users.containsKey(userId)) {
+                            userIds.remove(userId);
+                        }
+                        return userIds.isEmpty() ? null : userIds;
+                    });
+                }
+            }
+        });
+    }
+
+    // Called holding the UserChats lock, so writes to the user's chats wait until it is loaded
+    private void load(String userId, UserChats userChats, Collection<String> chatIds) {
+        // Registered before reading updatedAt so a message written during the read is not missed
+        for (String chatId : chatIds) {
+            register(chatId, userId, userChats);
+        }
+
+        if (!chatIds.isEmpty()) {
+            List<Map<String, AttributeValue>> chats = DynamoBatches.getItems(dynamoDbClient,
+                    dynamoDbConfig.getChatsTableName(), "chatId", chatIds, "chatId, updatedAt", null);
+            for (Map<String, AttributeValue> chat : chats) {
+                AttributeValue updatedAt = chat.get("updatedAt");
+                if (updatedAt != null && updatedAt.s() != null) {
+                    userChats.update(chat.get("chatId").s(), updatedAt.s());
+                }
+            }
+        }
+        userChats.loaded = true;
+    }
+
+    private void register(String chatId, String userId, UserChats userChats) {
+        usersByChat.computeIfAbsent(chatId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        userChats.registered.add(chatId);
+    }
+
+    private static final class ChatKey {
+        private final String updatedAt;
+        private final String chatId;
+
+        private ChatKey(String updatedAt, String chatId) {
+            this.updatedAt = updatedAt;
+            this.chatId = chatId;
+        }
+    }
+
+    /*
+     * One user's chats. Readers walk order without locking; writers synchronize on the object.
+     */
+    private static final class UserChats {
+        private final ConcurrentSkipListSet<ChatKey> order = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+        private final Map<String, String> updatedAtByChat = new HashMap<>();
+        // Chats this user is listed under in usersByChat, to unlist them on eviction
+        private final Set<String> registered = ConcurrentHashMap.newKeySet();
+        private boolean loaded = false;
+        private volatile long lastRead = System.currentTimeMillis();
+
+        private synchronized void update(String chatId, String updatedAt) {
+            String current = updatedAtByChat.get(chatId);
+            if (current != null && current.compareTo(updatedAt) >= 0) {
+                return;
+            }
+            // Add before removing so a concurrent walk never misses the chat entirely
+            order.add(new ChatKey(updatedAt, chatId));
+            if (current != null) {
+                order.remove(new ChatKey(current, chatId));
+            }
+            updatedAtByChat.put(chatId, updatedAt);
+        }
+
+        private synchronized void remove(String chatId) {
+            String current = updatedAtByChat.remove(chatId);
+            if (current != null) {
+                order.remove(new ChatKey(current, chatId));
+            }
+        }
+
+    }
+}
@@ -0,0 +1,253 @@
+package com._7.reshub.reshub.Services;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/*
+ * Runs the work that follows a message write (updating the chat item, pushing events, writing
+ * the recipient's notification) off the request thread, so sending a message only waits for the
+ * message's own PutItem.
+ *
+ * - Steps submitted for the same chat run one at a time in submission order, so the chat's
+ *   lastMessage and updatedAt end up matching its newest message. Different chats run in
+ *   parallel on the chatSideEffectExecutor pool.
+ * - A failing step is retried with exponential backoff until it has had
+ *   chats.sideeffects.max.attempts attempts, then it is logged and dropped. The chat's later steps wait behind it meanwhile.
+ * - At most chats.sideeffects.max.pending steps are queued. When that many are waiting, submit
+ *   waits briefly and then runs the step on the caller's thread, which slows senders down
+ *   instead of dropping work (a step run this way may overtake queued steps of the same chat).
+ * - On shutdown, queued steps and pending retries are given a few seconds to finish.
+ */
+@Service
+public class ChatSideEffectPipeline {
+
+    private static final Logger logger = Logger.getLogger(ChatSideEffectPipeline.class.getName());
+
+    // Steps one chat may run before its drain yields the thread to other chats
+    private static final int MAX_STEPS_PER_DRAIN = 16;
+
+    @Autowired
+    @Qualifier("chatSideEffectExecutor")
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // chats.sideeffects.max.attempts in application.properties
+    @Value("${chats.sideeffects.max.attempts:5}")
+    private int maxAttempts;
+
+    // chats.sideeffects.retry.backoff.ms in application.properties
+    @Value("${chats.sideeffects.retry.backoff.ms:100}")
+    private long retryBackoffMillis;
+
+    // chats.sideeffects.offer.timeout.ms in application.properties
+    @Value("${chats.sideeffects.offer.timeout.ms:50}")
+    private long offerTimeoutMillis;
+
+    private final Semaphore pendingPermits;
+    private final Map<String, ChatQueue> queues = new ConcurrentHashMap<>();
+
+    public ChatSideEffectPipeline(@Value("${chats.sideeffects.max.pending:10000}") int maxPending) {
+        this.pendingPermits = new Semaphore(maxPending);
+    }
+
+    /*
+     * Queues a step to run after the chat's previously submitted steps. name identifies the
+     * step in logs and metrics.
+     */
+    public void submit(String chatId, String name, Runnable step) {
+        boolean queued = false;
+        try {
+            queued = pendingPermits.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queued) {
+            latencyMetrics.increment("chats.sideeffects.syncFallback");
+            runNow(chatId, name, step, 0);
+            return;
+        }
+
+        Step queuedStep = new Step(name, step);
+        boolean[] startDrain = new boolean[1];
+        queues.compute(chatId, (id, queue) -> {
+            ChatQueue chatQueue = queue != null ? queue : new ChatQueue();
+            synchronized (chatQueue) {
+                chatQueue.steps.add(queuedStep);
+                if (!chatQueue.draining) {
+                    chatQueue.draining = true;
+                    startDrain[0] = true;
+                }
+            }
+            return chatQueue;
+        });
+
+        if (startDrain[0]) {
+            schedule(chatId, 0);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Chat side effects still pending at shutdown for " + queues.size() + " chats");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Runs the chat's queued steps in order until the queue is empty, a step has to be retried
+     * later, or the chat has had its share of the thread.
+     */
+    private void drain(String chatId) {
+        for (int ran = 0; ran < MAX_STEPS_PER_DRAIN; ran++) {
+            Step step = peek(chatId);
+            if (step == null) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                step.action.run();
+                latencyMetrics.recordSince("chats.sideeffects." + step.name, start);
+            } catch (Exception e) {
+                step.attempts++;
+                if (step.attempts < maxAttempts) {
+                    latencyMetrics.increment("chats.sideeffects.retry");
+                    // The step stays at the head of the queue, so the chat's later steps wait for it
+                    schedule(chatId, retryBackoffMillis << (step.attempts - 1));
+                    return;
+                }
+                logger.severe("Dropping " + step.name + " for chat " + chatId + " after " + step.attempts
+                        + " attempts: " + e.getMessage());
+                latencyMetrics.increment("chats.sideeffects.dropped");
+            }
+
+            if (!completeHead(chatId)) {
+                return;
+            }
+        }
+        // More steps are waiting; continue on a fresh task so other chats get a turn
+        schedule(chatId, 0);
+    }
+
+    private Step peek(String chatId) {
+        ChatQueue queue = queues.get(chatId);
+        if (queue == null) {
+            return null;
+        }
+        synchronized (queue) {
+            return queue.steps.peek();
+        }
+    }
+
+    /*
+     * Removes the step that just finished. Returns false, and forgets the chat, if it was the
+     * last one.
+     */
+    private boolean completeHead(String chatId) {
+        pendingPermits.release();
+        boolean[] more = new boolean[1];
+        queues.computeIfPresent(chatId, (id, queue) -> {
+            synchronized (queue) {
+                queue.steps.poll();
+                if (queue.steps.isEmpty()) {
+                    queue.draining = false;
+                    return null;
+                }
+            }
+            more[0] = true;
+            return queue;
+        });
+        return more[0];
+    }
+
+    private void schedule(String chatId, long delayMillis) {
+        try {
+            executor.schedule(() -> drain(chatId), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: finish the chat's steps here rather than lose them
+            drainNow(chatId);
+        }
+    }
+
+    private void drainNow(String chatId) {
+        Step step;
+        while ((step = peek(chatId)) != null) {
+            runNow(chatId, step.name, step.action, step.attempts);
+            if (!completeHead(chatId)) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Runs a step on the current thread, retrying it (after sleeping) until it has had
+     * maxAttempts attempts in all.
+     */
+    private void runNow(String chatId, String name, Runnable step, int attempts) {
+        while (true) {
+            try {
+                step.run();
+                return;
+            } catch (Exception e) {
+                attempts++;
+                if (attempts >= maxAttempts) {
+                    logger.severe("Dropping " + name + " for chat " + chatId + " after " + attempts
+                            + " attempts: " + e.getMessage());
+                    latencyMetrics.increment("chats.sideeffects.dropped");
+                    return;
+                }
+                latencyMetrics.increment("chats.sideeffects.retry");
+                sleep(retryBackoffMillis << (attempts - 1));
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * The chat's steps that have not finished yet; the head is running or waiting to be retried.
+     * While draining is set exactly one drain task for the chat is scheduled or running.
+     */
+    private static final class ChatQueue {
+        private final ArrayDeque<Step> steps = new ArrayDeque<>();
+        private boolean draining = false;
+    }
+
+    private static final class Step {
+        private final String name;
+        private final Runnable action;
+        private int attempts = 0;
+
+        private Step(String name, Runnable action) {
+            this.name = name;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Models.Profile;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Roommate compatibility scoring.
+ *
+ * Every profile is encoded once into two small vectors indexed by its catalog ordinal: its own
+ * traits (smokingStatus, cleanlinessLevel, ...) and its roommate preferences (roommateSmokingPreference,
+ * roommateCleanlinessLevel, ...). Each dimension value becomes a byte code, and a precomputed
+ * points table says how well a preference code accepts a trait code. Scoring a pair is then
+ * 2 * DIMENSIONS table lookups, one pass for each direction (my preference against your trait and
+ * your preference against my trait).
+ *
+ * Ranking keeps a bounded min-heap of packed longs (liked flag, score, ordinal), so ranking
+ * thousands of candidates allocates one long[k] and never sorts the full candidate list.
+ *
+ * Not thread-safe; DiscoveryCatalogService guards it with its lock.
+ */
+public class CompatibilityScorer {
+
+    // Code 0 means the value is missing or not recognised
+    private static final byte UNKNOWN = 0;
+    private static final int NEUTRAL_POINTS = 2;
+    private static final int MAX_POINTS = 4;
+
+    private static final List<Dimension> DIMENSIONS = List.of(
+        new Dimension(Profile::getSmokingStatus, Profile::getRoommateSmokingPreference,
+            new String[] { "non-smoker", "smoker" },
+            new String[] { "non-smoker", "smoker", "only when i'm not around" },
+            new int[][] {
+                // trait:  non-smoker, smoker
+                { 4, 0 }, // pref non-smoker
+                { 4, 4 }, // pref smoker
+                { 4, 2 }, // pref only when I'm not around
+            }),
+        new Dimension(Profile::getCleanlinessLevel, Profile::getRoommateCleanlinessLevel,
+            new String[] { "very clean", "moderate", "messy" },
+            new String[] { "very clean", "moderate", "messy" },
+            scale(3)),
+        new Dimension(Profile::getSleepSchedule, Profile::getRoommateSleepSchedule,
+            new String[] { "early bird", "night owl", "flexible" },
+            new String[] { "early bird", "night owl", "flexible" },
+            new int[][] {
+                // trait:  early bird, night owl, flexible
+                { 4, 0, 3 }, // pref early bird
+                { 0, 4, 3 }, // pref night owl
+                { 3, 3, 4 }, // pref flexible
+            }),
+        new Dimension(Profile::getGuestFrequency, Profile::getRoommateGuestFrequency,
+            new String[] { "rarely", "occasionally", "frequently" },
+            new String[] { "rarely", "occasionally", "frequently" },
+            scale(3)),
+        new Dimension(Profile::getHasPets, Profile::getRoommatePetPreference,
+            new String[] { "yes", "no", "might" },
+            new String[] { "no pets", "okay with pets" },
+            new int[][] {
+                // trait:  yes, no, might
+                { 0, 4, 1 }, // pref no pets
+                { 4, 4, 4 }, // pref okay with pets
+            }),
+        new Dimension(Profile::getNoiseLevel, Profile::getRoommateNoiseTolerance,
+            new String[] { "quiet", "moderate", "loud environment" },
+            new String[] { "quiet", "moderate", "loud environment" },
+            new int[][] {
+                // trait:  quiet, moderate, loud (anything at or below the tolerance is fine)
+                { 4, 2, 0 }, // pref quiet
+                { 4, 4, 2 }, // pref moderate
+                { 4, 4, 4 }, // pref loud environment
+            }),
+        new Dimension(Profile::getSharingCommonItems, Profile::getRoommateSharingCommonItems,
+            new String[] { "strictly separate", "willing to share", "flexible" },
+            new String[] { "strictly separate", "willing to share", "flexible" },
+            new int[][] {
+                // trait:  separate, share, flexible
+                { 4, 0, 3 }, // pref strictly separate
+                { 0, 4, 3 }, // pref willing to share
+                { 3, 3, 4 }, // pref flexible
+            }),
+        new Dimension(Profile::getDietaryPreference, Profile::getRoommateDietaryPreference,
+            new String[] { "vegetarian", "vegan", "allergies", "no restrictions", "other" },
+            new String[] { "vegetarian", "vegan", "no restrictions" },
+            new int[][] {
+                // trait:  vegetarian, vegan, allergies, no restrictions, other
+                { 4, 4, 1, 1, 1 }, // pref vegetarian
+                { 2, 4, 0, 0, 0 }, // pref vegan
+                { 4, 4, 4, 4, 4 }, // pref no restrictions
+            })
+    );
+
+    // Other spellings the app saves for the same value (Settings offers "Moderate Noise" for both
+    // noise fields, onboarding offers it for the trait and "Moderate" for the tolerance)
+    private static final Map<String, String> ALIASES = Map.of("moderate noise", "moderate");
+
+    private static final int DIMENSION_COUNT = DIMENSIONS.size();
+    public static final int MAX_SCORE = 2 * DIMENSION_COUNT * MAX_POINTS;
+
+    // points[dimension][prefCode][traitCode], including the UNKNOWN row and column
+    private static final int[][][] POINTS = new int[DIMENSION_COUNT][][];
+
+    static {
+        for (int d = 0; d < DIMENSION_COUNT; d++) {
+            Dimension dimension = DIMENSIONS.get(d);
+            int[][] table = new int[dimension.prefValues.length + 1][dimension.traitValues.length + 1];
+            for (int[] row : table) {
+                Arrays.fill(row, NEUTRAL_POINTS);
+            }
+            for (int pref = 0; pref < dimension.prefValues.length; pref++) {
+                for (int trait = 0; trait < dimension.traitValues.length; trait++) {
+                    table[pref + 1][trait + 1] = dimension.points[pref][trait];
+                }
+            }
+            POINTS[d] = table;
+        }
+    }
+
+    // traits[ordinal * DIMENSION_COUNT + d] and prefs[ordinal * DIMENSION_COUNT + d]
+    private byte[] traits = new byte[0];
+    private byte[] prefs = new byte[0];
+
+    /*
+     * Encodes (or re-encodes) the trait and preference vectors of the profile at the given ordinal.
+     */
+    public void set(int ordinal, Profile profile) {
+        ensureCapacity(ordinal + 1);
+
+        int offset = ordinal * DIMENSION_COUNT;
+        for (int d = 0; d < DIMENSION_COUNT; d++) {
+            Dimension dimension = DIMENSIONS.get(d);
+            traits[offset + d] = encode(dimension.traitValues, dimension.trait.apply(profile));
+            prefs[offset + d] = encode(dimension.prefValues, dimension.pref.apply(profile));
+        }
+    }
+
+    /*
+     * Resets the vectors of a removed profile to unknown.
+     */
+    public void clear(int ordinal) {
+        if ((ordinal + 1) * DIMENSION_COUNT > traits.length) {
+            return;
+        }
+
+        int offset = ordinal * DIMENSION_COUNT;
+        Arrays.fill(traits, offset, offset + DIMENSION_COUNT, UNKNOWN);
+        Arrays.fill(prefs, offset, offset + DIMENSION_COUNT, UNKNOWN);
+    }
+
+    /*
+     * Scores a pair in both directions, from 0 to MAX_SCORE. A viewer of -1 (no profile) is
+     * treated as having only unknown values.
+     */
+    public int score(int viewer, int candidate) {
+        int viewerOffset = viewer * DIMENSION_COUNT;
+        int candidateOffset = candidate * DIMENSION_COUNT;
+        int score = 0;
+
+        for (int d = 0; d < DIMENSION_COUNT; d++) {
+            int viewerTrait = viewer < 0 ? UNKNOWN : traits[viewerOffset + d];
+            int viewerPref = viewer < 0 ? UNKNOWN : prefs[viewerOffset + d];
+            score += POINTS[d][viewerPref][traits[candidateOffset + d]];
+            score += POINTS[d][prefs[candidateOffset + d]][viewerTrait];
+        }
+        return score;
+    }
+
+    /*
+     * Returns the best k candidates for the viewer as packed rank keys, best first. Candidates in
+     * liked rank ahead of everyone else; within that, higher score first, then lower ordinal.
+     * Only candidates whose key is strictly below after are considered (pass Long.MAX_VALUE for
+     * the first page).
+     */
+    public long[] topK(int viewer, BitSet candidates, BitSet liked, int k, long after) {
+        long[] heap = new long[k];
+        int size = 0;
+
+        for (int candidate = candidates.nextSetBit(0); candidate >= 0; candidate = candidates.nextSetBit(candidate + 1)) {
+            long key = rankKey(liked.get(candidate), score(viewer, candidate), candidate);
+            if (key >= after) {
+                continue;
+            }
+
+            if (size < k) {
+                heap[size] = key;
+                siftUp(heap, size++);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size);
+            }
+        }
+
+        // Drain the min-heap from the back so the result ends up best first
+        long[] ranked = new long[size];
+        for (int i = size - 1; i >= 0; i--) {
+            ranked[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+        }
+        return ranked;
+    }
+
+    public static long rankKey(boolean isLiked, int score, int ordinal) {
+        return ((isLiked ? 1L : 0L) << 48) | ((long) score << 32) | (Integer.MAX_VALUE - ordinal);
+    }
+
+    public static boolean isLiked(long rankKey) {
+        return (rankKey >>> 48) == 1L;
+    }
+
+    public static int scoreOf(long rankKey) {
+        return (int) ((rankKey >>> 32) & 0xFFFF);
+    }
+
+    public static int ordinalOf(long rankKey) {
+        return Integer.MAX_VALUE - (int) (rankKey & 0xFFFFFFFFL);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+
+        long key = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+
+    private static byte encode(String[] values, String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        normalized = ALIASES.getOrDefault(normalized, normalized);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(normalized)) {
+                return (byte) (i + 1);
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private void ensureCapacity(int size) {
+        if (traits.length >= size * DIMENSION_COUNT) {
+            return;
+        }
+
+        int newSize = Math.max(size, Math.max(16, 2 * traits.length / DIMENSION_COUNT)) * DIMENSION_COUNT;
+        traits = Arrays.copyOf(traits, newSize);
+        prefs = Arrays.copyOf(prefs, newSize);
+    }
+
+    /*
+     * Points for an ordered scale where each step apart costs 2 points.
+     */
+    private static int[][] scale(int size) {
+        int[][] points = new int[size][size];
+        for (int pref = 0; pref < size; pref++) {
+            for (int trait = 0; trait < size; trait++) {
+                points[pref][trait] = Math.max(0, MAX_POINTS - 2 * Math.abs(pref - trait));
+            }
+        }
+        return points;
+    }
+
+    /*
+     * One trait/preference pair and the points a preference gives each trait value.
+     */
+    private static class Dimension {
+        private final Function<Profile, String> trait;
+        private final Function<Profile, String> pref;
+        private final String[] traitValues;
+        private final String[] prefValues;
+        private final int[][] points;
+
+        private Dimension(Function<Profile, String> trait, Function<Profile, String> pref,
+                String[] traitValues, String[] prefValues, int[][] points) {
+            this.trait = trait;
+            this.pref = pref;
+            this.traitValues = traitValues;
+            this.prefValues = prefValues;
+            this.points = points;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Models.Profile;
+import com._7.reshub.reshub.Models.ProfileCard;
+import com._7.reshub.reshub.Utils.DynamoPages;
+import com._7.reshub.reshub.Utils.ProfileItemMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/*
+ * In-memory snapshot of the profiles table used by discovery. It is filled once at startup
+ * with a parallel segmented scan and then kept current by the endpoints that write profiles,
+ * so building the swipe deck never has to scan DynamoDB.
+ *
+ * Each user gets a dense int ordinal from a UserIdInterner the first time they are seen. The
+ * ordinal addresses the card array, the bitmap attribute index, which answers discovery
+ * filters without comparing strings, the encoded trait vectors used for compatibility
+ * ranking and the activity index used for recency ranking. Blocked lists are kept as BitSets
+ * of ordinals, so excluding blocked, swiped-on or any other set of users from a result is a
+ * single BitSet andNot. Ordinals are never reused, so a deleted profile just leaves a hole.
+ *
+ * The snapshot is local to this instance; profile writes made outside this application are
+ * only picked up on the next restart.
+ */
+@Service
+public class DiscoveryCatalogService {
+
+    private static final Logger logger = Logger.getLogger(DiscoveryCatalogService.class.getName());
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    // discovery.catalog.scan.segments in application.properties
+    @Value("${discovery.catalog.scan.segments:4}")
+    private int scanSegments;
+
+    // Every projected attribute is aliased (#a0, #a1, ...) so none of them can clash with a reserved word
+    private static final Map<String, String> PROJECTION_NAMES = new HashMap<>();
+    private static final String PROJECTION_EXPRESSION;
+
+    static {
+        List<String> aliases = new ArrayList<>();
+        for (String attribute : ProfileItemMapper.DISCOVERY_ATTRIBUTES) {
+            String alias = "#a" + aliases.size();
+            PROJECTION_NAMES.put(alias, attribute);
+            aliases.add(alias);
+        }
+        PROJECTION_EXPRESSION = String.join(", ", aliases);
+    }
+
+    private final UserIdInterner ordinals = new UserIdInterner();
+    private final Map<String, BitSet> blockedUsers = new ConcurrentHashMap<>();
+
+    // Guards cardsByOrdinal, attributeIndex, compatibilityScorer and activityIndex updates
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ProfileCard[] cardsByOrdinal = new ProfileCard[0];
+    private final ProfileAttributeIndex attributeIndex = new ProfileAttributeIndex();
+    private final CompatibilityScorer compatibilityScorer = new CompatibilityScorer();
+    private final ActivityIndex activityIndex = new ActivityIndex();
+    // Users deleted while the startup scan runs, so the scan does not add back its stale copy
+    private final Set<String> removedDuringLoad = new HashSet<>();
+
+    private volatile boolean loaded = false;
+
+    /*
+     * Loads the catalog once the application has started. A failure here is not fatal, the
+     * load is retried the first time discovery needs the catalog.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            ensureLoaded();
+        } catch (Exception e) {
+            logger.severe("Failed to load discovery catalog at startup: " + e.getMessage());
+        }
+    }
+
+    /*
+     * True once the startup scan has completed.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /*
+     * Loads the catalog if it has not been loaded yet.
+     */
+    public void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            int count = scanAllProfiles();
+            loaded = true;
+            lock.writeLock().lock();
+            try {
+                removedDuringLoad.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Discovery catalog loaded " + count + " profiles in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /*
+     * Scans the profiles table with one worker per segment. Each worker follows
+     * LastEvaluatedKey until its segment is exhausted.
+     */
+    private int scanAllProfiles() {
+        int segments = Math.max(1, scanSegments);
+        ExecutorService executor = Executors.newFixedThreadPool(segments);
+
+        try {
+            List<Future<Integer>> workers = new ArrayList<>();
+            for (int segment = 0; segment < segments; segment++) {
+                final int currentSegment = segment;
+                workers.add(executor.submit(() -> scanSegment(currentSegment, segments)));
+            }
+
+            int count = 0;
+            for (Future<Integer> worker : workers) {
+                count += worker.get();
+            }
+            return count;
+        } catch (Exception e) {
+            throw new RuntimeException("Error scanning profiles table: " + e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int scanSegment(int segment, int totalSegments) {
+        ScanRequest scanRequest = ScanRequest.builder()
+            .tableName(dynamoDbConfig.getUserProfilesTableName())
+            .projectionExpression(PROJECTION_EXPRESSION)
+            .expressionAttributeNames(PROJECTION_NAMES)
+            .segment(segment)
+            .totalSegments(totalSegments)
+            .build();
+
+        // Writes and deletes that landed while the scan was running are newer than the scanned copy
+        return (int) DynamoPages.scan(dynamoDbClient, scanRequest)
+            .filter(item -> store(item, false))
+            .count();
+    }
+
+    /*
+     * Replaces the cached copy of a profile with the given profiles table item.
+     */
+    public void upsert(Map<String, AttributeValue> item) {
+        if (item == null || !item.containsKey("userId")) {
+            return;
+        }
+
+        store(item, true);
+    }
+
+    private boolean store(Map<String, AttributeValue> item, boolean overwrite) {
+        String userId = item.get("userId").s();
+        ProfileCard card = ProfileItemMapper.toProfileCard(item);
+        // The full profile is only needed to index traits and preferences, it is not kept
+        Profile profile = ProfileItemMapper.toProfile(item);
+
+        lock.writeLock().lock();
+        try {
+            if (!overwrite && removedDuringLoad.contains(userId)) {
+                return false;
+            }
+            removedDuringLoad.remove(userId);
+
+            int ordinal = ordinals.intern(userId);
+            if (!overwrite && ordinal < cardsByOrdinal.length && cardsByOrdinal[ordinal] != null) {
+                return false;
+            }
+
+            if (ordinal >= cardsByOrdinal.length) {
+                cardsByOrdinal = Arrays.copyOf(cardsByOrdinal, Math.max(16, (ordinal + 1) * 2));
+            }
+            cardsByOrdinal[ordinal] = card;
+            attributeIndex.set(ordinal, profile);
+            compatibilityScorer.set(ordinal, profile);
+            activityIndex.set(ordinal, card.getLastTimeActive());
+            blockedUsers.put(userId, internAll(ProfileItemMapper.toBlockedUsers(item)));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Drops a deleted profile from the catalog.
+     */
+    public void remove(String userId) {
+        lock.writeLock().lock();
+        try {
+            int ordinal = ordinals.get(userId);
+            if (ordinal != UserIdInterner.NOT_FOUND && ordinal < cardsByOrdinal.length) {
+                cardsByOrdinal[ordinal] = null;
+                attributeIndex.clear(ordinal);
+                compatibilityScorer.clear(ordinal);
+                activityIndex.clear(ordinal);
+            }
+            blockedUsers.remove(userId);
+            if (!loaded) {
+                removedDuringLoad.add(userId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Records a change to the given user's blocked list.
+     */
+    public void setBlockedUsers(String userId, List<String> blockedUserIds) {
+        blockedUsers.put(userId, internAll(blockedUserIds));
+    }
+
+    // Blocked users may not have a profile yet, so they are interned rather than looked up
+    private BitSet internAll(List<String> userIds) {
+        BitSet result = new BitSet();
+        for (String userId : userIds) {
+            result.set(ordinals.intern(userId));
+        }
+        return result;
+    }
+
+    /*
+     * Returns the ordinals of the profiles the viewer can see that match every attribute filter.
+     * Filters map an attribute from ProfileAttributeIndex.ATTRIBUTES to the values to accept; an
+     * empty map returns every profile. The viewer, the users they blocked and the excluded
+     * ordinals (see toOrdinals) are never included.
+     */
+    public BitSet findCandidates(String viewerId, Map<String, ? extends Collection<String>> filters,
+            BitSet excluded) {
+        ensureLoaded();
+
+        lock.readLock().lock();
+        try {
+            BitSet matches = attributeIndex.match(filters);
+            matches.andNot(excluded);
+
+            BitSet blocked = blockedUsers.get(viewerId);
+            if (blocked != null) {
+                matches.andNot(blocked);
+            }
+
+            int viewer = ordinals.get(viewerId);
+            if (viewer != UserIdInterner.NOT_FOUND) {
+                matches.clear(viewer);
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Ranks the candidate ordinals for the viewer by roommate compatibility and returns the best k as
+     * packed CompatibilityScorer rank keys, best first. Profiles in likedBy rank ahead of the
+     * rest (likedBy holds ordinals, see toOrdinals). Only keys strictly below after are returned,
+     * so the last key of one page can be passed back to get the next one.
+     */
+    public long[] rankByCompatibility(String viewerId, BitSet candidates, BitSet likedBy, int k, long after) {
+        ensureLoaded();
+
+        lock.readLock().lock();
+        try {
+            return compatibilityScorer.topK(getOrdinal(viewerId), candidates, likedBy, k, after);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Returns the ActivityIndex keys of the given ordinals, most recently active first. Ordinals
+     * without a profile are skipped.
+     */
+    public long[] getActivityKeys(BitSet ordinals) {
+        lock.readLock().lock();
+        try {
+            long[] keys = new long[ordinals.cardinality()];
+            int count = 0;
+            for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+                long key = activityIndex.keyOf(ordinal);
+                if (key >= 0) {
+                    keys[count++] = key;
+                }
+            }
+
+            keys = Arrays.copyOf(keys, count);
+            Arrays.sort(keys);
+            // Reverse into most recent first
+            for (int i = 0, j = count - 1; i < j; i++, j--) {
+                long swap = keys[i];
+                keys[i] = keys[j];
+                keys[j] = swap;
+            }
+            return keys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Walks every profile from most to least recently active, starting strictly after the given
+     * ActivityIndex key (Long.MAX_VALUE for the start). The walk is lazy, so callers can stop as
+     * soon as they have enough profiles.
+     */
+    public Iterator<Long> walkByActivity(long afterKey) {
+        ensureLoaded();
+        return activityIndex.walk(afterKey);
+    }
+
+    /*
+     * Returns the ordinal assigned to the user, or -1 if the catalog has never seen them.
+     */
+    public int getOrdinal(String userId) {
+        return ordinals.get(userId);
+    }
+
+    /*
+     * Returns the ordinals of the given users as a BitSet, skipping users the catalog has never seen.
+     */
+    public BitSet toOrdinals(Collection<String> userIds) {
+        return ordinals.toBitSet(userIds);
+    }
+
+    /*
+     * Returns the card at the given ordinal, or null if the profile was deleted.
+     */
+    public ProfileCard getCard(int ordinal) {
+        lock.readLock().lock();
+        try {
+            return ordinal >= 0 && ordinal < cardsByOrdinal.length ? cardsByOrdinal[ordinal] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Models.ProfileCard;
+import com._7.reshub.reshub.Utils.DynamoBatches;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Looks up users' full names for display (blocked lists, notifications, match messages) without
+ * one GetItem per name.
+ *
+ * A name comes from the discovery catalog if it has the user, else from a small LRU of names read
+ * earlier (at most profiles.names.cache.max.entries, each kept for profiles.names.ttl.ms), and
+ * otherwise from the profiles table. All the names a call still needs are read together with
+ * BatchGetItem, so resolving N names costs about N/100 round trips. A name another caller is
+ * already reading is waited for instead of read twice.
+ *
+ * Profile writes go through ProfileCache, which invalidates the name here. Writes through another
+ * instance are seen after the TTL.
+ */
+@Service
+public class DisplayNameResolver {
+
+    private static final int WRITE_STRIPES = 256;
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private DiscoveryCatalogService discoveryCatalogService;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // profiles.names.cache.max.entries in application.properties
+    @Value("${profiles.names.cache.max.entries:2000}")
+    private int maxEntries;
+
+    // profiles.names.ttl.ms in application.properties
+    @Value("${profiles.names.ttl.ms:300000}")
+    private long ttlMillis;
+
+    // Access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, CachedName> names = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedName> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    // null result when the user has no profile or no name
+    private final Map<String, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+    private final AtomicLongArray writeCounts = new AtomicLongArray(WRITE_STRIPES);
+
+    @PostConstruct
+    void registerGauges() {
+        latencyMetrics.registerGauge("profiles.names.size", this::size);
+    }
+
+    /*
+     * Returns the user's full name, or null if they have no profile or no name.
+     */
+    public String resolve(String userId) {
+        return resolve(List.of(userId)).get(userId);
+    }
+
+    /*
+     * Returns the full names of the given users. Users without a profile or name are left out.
+     */
+    public Map<String, String> resolve(Collection<String> userIds) {
+        Map<String, String> resolved = new HashMap<>();
+        Map<String, CompletableFuture<String>> joined = new HashMap<>();
+        Map<String, CompletableFuture<String>> owned = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            String name = fromCatalog(userId);
+            if (name == null) {
+                name = fromCache(userId, now);
+            }
+            if (name != null) {
+                latencyMetrics.increment("profiles.names.hit");
+                resolved.put(userId, name);
+                continue;
+            }
+
+            CompletableFuture<String> load = new CompletableFuture<>();
+            CompletableFuture<String> existing = loading.putIfAbsent(userId, load);
+            if (existing != null) {
+                latencyMetrics.increment("profiles.names.joined");
+                joined.put(userId, existing);
+            } else {
+                latencyMetrics.increment("profiles.names.miss");
+                owned.put(userId, load);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            load(owned);
+        }
+
+        for (Map.Entry<String, CompletableFuture<String>> entry : owned.entrySet()) {
+            putIfNamed(resolved, entry.getKey(), entry.getValue().join());
+        }
+        for (Map.Entry<String, CompletableFuture<String>> entry : joined.entrySet()) {
+            putIfNamed(resolved, entry.getKey(), join(entry.getValue()));
+        }
+        return resolved;
+    }
+
+    /*
+     * Forgets the user's name after their profile was written or deleted.
+     */
+    public void invalidate(String userId) {
+        synchronized (names) {
+            writeCounts.incrementAndGet(stripe(userId));
+            names.remove(userId);
+        }
+        loading.remove(userId);
+    }
+
+    /*
+     * Reads the names this call is responsible for and completes their futures, including for
+     * the callers that joined them.
+     */
+    private void load(Map<String, CompletableFuture<String>> owned) {
+        Map<String, Long> writeStamps = new HashMap<>();
+        for (String userId : owned.keySet()) {
+            writeStamps.put(userId, writeCounts.get(stripe(userId)));
+        }
+
+        Map<String, String> found = new HashMap<>();
+        try {
+            long start = System.nanoTime();
+            List<Map<String, AttributeValue>> profiles = DynamoBatches.getItems(dynamoDbClient,
+                    dynamoDbConfig.getUserProfilesTableName(), "userId", owned.keySet(), "userId, fullName", null);
+            latencyMetrics.recordSince("profiles.names.load", start);
+
+            for (Map<String, AttributeValue> profile : profiles) {
+                AttributeValue fullName = profile.get("fullName");
+                if (fullName != null && fullName.s() != null) {
+                    found.put(profile.get("userId").s(), fullName.s());
+                }
+            }
+        } catch (RuntimeException e) {
+            for (Map.Entry<String, CompletableFuture<String>> entry : owned.entrySet()) {
+                entry.getValue().completeExceptionally(e);
+                loading.remove(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+
+        long loadedAt = System.currentTimeMillis();
+        synchronized (names) {
+            for (Map.Entry<String, String> entry : found.entrySet()) {
+                // Skip names whose profile was written while we were reading it
+                if (writeCounts.get(stripe(entry.getKey())) == writeStamps.get(entry.getKey())) {
+                    names.put(entry.getKey(), new CachedName(entry.getValue(), loadedAt));
+                }
+            }
+        }
+        for (Map.Entry<String, CompletableFuture<String>> entry : owned.entrySet()) {
+            entry.getValue().complete(found.get(entry.getKey()));
+            loading.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private String fromCatalog(String userId) {
+        int ordinal = discoveryCatalogService.getOrdinal(userId);
+        ProfileCard card = ordinal < 0 ? null : discoveryCatalogService.getCard(ordinal);
+        return card == null ? null : card.getFullName();
+    }
+
+    private String fromCache(String userId, long now) {
+        synchronized (names) {
+            CachedName cached = names.get(userId);
+            if (cached == null) {
+                return null;
+            }
+            if (now - cached.loadedAt >= ttlMillis) {
+                names.remove(userId);
+                return null;
+            }
+            return cached.name;
+        }
+    }
+
+    private static void putIfNamed(Map<String, String> resolved, String userId, String name) {
+        if (name != null) {
+            resolved.put(userId, name);
+        }
+    }
+
+    private static String join(CompletableFuture<String> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // Surface the DynamoDB exception the way a direct call would
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static int stripe(String userId) {
+        return Math.floorMod(userId.hashCode(), WRITE_STRIPES);
+    }
+
+    private int size() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+
+    private static final class CachedName {
+        private final String name;
+        private final long loadedAt;
+
+        private CachedName(String name, long loadedAt) {
+            this.name = name;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -4,10 +4,12 @@ import software.amazon.awssdk.services.dynamodb.model.*;
 import org.springframework.stereotype.Service;
 
 import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Utils.DynamoPages;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import java.util.Map;
+import java.util.stream.Stream;
 
 @Service
 public class DynamoDbService {
@@ -32,11 +34,9 @@ public class DynamoDbService {
                 ))
                 .build();
 
-        QueryResponse response = dynamoDbClient.query(queryRequest);
-        if (response.items().isEmpty()) {
-            return null;
+        try (Stream<Map<String, AttributeValue>> items = DynamoPages.query(dynamoDbClient, queryRequest)) {
+            return items.findFirst().orElse(null);
         }
-        return response.items().get(0);
     }
 
     public void savePasswordResetToken(String email, String token, long expirationTime) {
@@ -73,11 +73,10 @@ public class DynamoDbService {
                 .expressionAttributeValues(Map.of(":token", AttributeValue.builder().s(token).build()))
                 .build();
 
-        ScanResponse response = dynamoDbClient.scan(scanRequest);
-        if (response.items().isEmpty()) {
-            return null;
+        // The filter runs per 1 MB page, so the matching user can be on any page of the scan
+        try (Stream<Map<String, AttributeValue>> items = DynamoPages.scan(dynamoDbClient, scanRequest)) {
+            return items.findFirst().orElse(null);
         }
-        return response.items().get(0);
     }
 
     public void updateUserPassword(String email, String password) {
@@ -0,0 +1,139 @@
+package com._7.reshub.reshub.Services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Logger;
+
+/*
+ * In-process broker for server-sent events. Each connected client holds an SseEmitter registered
+ * under its user id (a user may be connected from several devices), and services publish
+ * messages, matches and notifications to the users involved instead of clients polling for them.
+ *
+ * Connections are local to this instance. Emitters are dropped when the client disconnects, the
+ * connection times out or a send fails; a comment line is sent every
+ * events.heartbeat.interval.ms so proxies keep idle connections open and dead ones are noticed.
+ */
+@Service
+public class EventBroker {
+
+    private static final Logger logger = Logger.getLogger(EventBroker.class.getName());
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // events.sse.timeout.ms in application.properties
+    @Value("${events.sse.timeout.ms:1800000}")
+    private long timeoutMillis;
+
+    // events.max.connections.per.user in application.properties
+    @Value("${events.max.connections.per.user:5}")
+    private int maxConnectionsPerUser;
+
+    private final Map<String, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    /*
+     * Opens an event stream for the user. If they already have the maximum number of streams
+     * open, the oldest one is closed.
+     */
+    public SseEmitter subscribe(String userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        // Added inside compute so a concurrent remove cannot drop the set we are adding to
+        Set<SseEmitter> userEmitters = emitters.compute(userId, (id, existing) -> {
+            Set<SseEmitter> set = existing != null ? existing : new CopyOnWriteArraySet<>();
+            set.add(emitter);
+            return set;
+        });
+
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        while (userEmitters.size() > maxConnectionsPerUser) {
+            Iterator<SseEmitter> oldest = userEmitters.iterator();
+            if (!oldest.hasNext()) {
+                break;
+            }
+            SseEmitter evicted = oldest.next();
+            userEmitters.remove(evicted);
+            evicted.complete();
+        }
+
+        // Tells the client the stream is open before the first real event
+        send(userId, emitter, SseEmitter.event().name("connected").data(Map.of("userId", userId)));
+        latencyMetrics.increment("events.subscribe");
+        return emitter;
+    }
+
+    /*
+     * Sends an event to every open stream of the user. Users who are not connected simply miss
+     * it; the data is in DynamoDB for when they next load the screen.
+     */
+    public void publish(String userId, String eventName, Object payload) {
+        if (userId == null) {
+            return;
+        }
+
+        Set<SseEmitter> userEmitters = emitters.get(userId);
+        if (userEmitters == null || userEmitters.isEmpty()) {
+            return;
+        }
+
+        for (SseEmitter emitter : userEmitters) {
+            send(userId, emitter, SseEmitter.event().name(eventName).data(payload, MediaType.APPLICATION_JSON));
+        }
+        latencyMetrics.increment("events.published");
+    }
+
+    /*
+     * Sends the event to each of the given users.
+     */
+    public void publish(Collection<String> userIds, String eventName, Object payload) {
+        for (String userId : userIds) {
+            publish(userId, eventName, payload);
+        }
+    }
+
+    /*
+     * Keeps idle streams alive and clears out the ones whose clients have gone away.
+     */
+    @Scheduled(fixedDelayString = "${events.heartbeat.interval.ms:25000}")
+    public void sendHeartbeats() {
+        for (Map.Entry<String, Set<SseEmitter>> entry : emitters.entrySet()) {
+            for (SseEmitter emitter : entry.getValue()) {
+                send(entry.getKey(), emitter, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    private void send(String userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            // SseEmitter is not safe for concurrent sends (a publish racing a heartbeat)
+            synchronized (emitter) {
+                emitter.send(event);
+            }
+        } catch (Exception e) {
+            logger.fine("Dropping event stream for " + userId + ": " + e.getMessage());
+            latencyMetrics.increment("events.dropped");
+            remove(userId, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(String userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (id, userEmitters) -> {
+            userEmitters.remove(emitter);
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+}
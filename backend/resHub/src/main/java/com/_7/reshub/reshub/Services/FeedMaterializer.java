@@ -0,0 +1,224 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Models.DiscoveryLookups;
+import com._7.reshub.reshub.Models.ProfileCard;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/*
+ * Keeps a bounded queue of ranked candidate user ids for each active user, so opening the swipe
+ * deck is a peek at the queue plus a card lookup in the catalog instead of a full discovery run.
+ *
+ * A feed is built the first time a user asks for it (or when they change filters or sort). After
+ * that a scheduled job refills feeds that run low, a few per tick, and swipes remove the swiped on
+ * user from the swiper's queue. Feeds that are not read for discovery.feed.idle.ms are dropped.
+ */
+@Service
+public class FeedMaterializer {
+
+    private static final Logger logger = Logger.getLogger(FeedMaterializer.class.getName());
+
+    // How long a feed that already holds every candidate waits before checking for new profiles
+    private static final long EXHAUSTED_RETRY_MILLIS = 60_000;
+
+    @Autowired
+    private ProfileService profileService;
+
+    @Autowired
+    private DiscoveryCatalogService discoveryCatalogService;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // discovery.feed.capacity in application.properties
+    @Value("${discovery.feed.capacity:200}")
+    private int capacity;
+
+    // discovery.feed.low.watermark in application.properties
+    @Value("${discovery.feed.low.watermark:50}")
+    private int lowWatermark;
+
+    // discovery.feed.refills.per.tick in application.properties
+    @Value("${discovery.feed.refills.per.tick:10}")
+    private int refillsPerTick;
+
+    // discovery.feed.idle.ms in application.properties
+    @Value("${discovery.feed.idle.ms:1800000}")
+    private long idleMillis;
+
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+
+    /*
+     * Returns up to count cards from the front of the user's feed without removing them; cards
+     * leave the feed when the user swipes on them. The feed is rebuilt right away if it does not
+     * exist yet or was built for different filters or sort.
+     */
+    public List<ProfileCard> peek(String userId, String genderFilter, Map<String, List<String>> attributeFilters,
+            boolean byCompatibility, int count) {
+        String parameters = describe(genderFilter, attributeFilters, byCompatibility);
+
+        Feed feed = feeds.computeIfAbsent(userId,
+                id -> new Feed(genderFilter, attributeFilters, byCompatibility, parameters));
+        if (!feed.parameters.equals(parameters)) {
+            feed = new Feed(genderFilter, attributeFilters, byCompatibility, parameters);
+            feeds.put(userId, feed);
+        }
+        feed.lastRead = System.currentTimeMillis();
+
+        if (!feed.built) {
+            latencyMetrics.increment("discovery.feed.miss");
+            refill(userId, feed);
+        } else {
+            latencyMetrics.increment("discovery.feed.hit");
+        }
+
+        List<ProfileCard> cards = new ArrayList<>(count);
+        synchronized (feed) {
+            Iterator<String> ids = feed.queue.iterator();
+            while (ids.hasNext() && cards.size() < count) {
+                int ordinal = discoveryCatalogService.getOrdinal(ids.next());
+                ProfileCard card = ordinal < 0 ? null : discoveryCatalogService.getCard(ordinal);
+                if (card == null) {
+                    // The profile was deleted after the feed was built
+                    ids.remove();
+                } else {
+                    cards.add(card);
+                }
+            }
+        }
+        return cards;
+    }
+
+    /*
+     * Removes the swiped on user from the swiper's feed.
+     */
+    public void onSwipe(String userId, String swipedOnUserId) {
+        Feed feed = feeds.get(userId);
+        if (feed == null) {
+            return;
+        }
+
+        synchronized (feed) {
+            feed.queue.remove(swipedOnUserId);
+            // A refill that started before this swipe may still rank this user
+            feed.swipedDuringRefill.add(swipedOnUserId);
+        }
+    }
+
+    /*
+     * Drops the user's feed, for example after a swipe was rolled back.
+     */
+    public void invalidate(String userId) {
+        feeds.remove(userId);
+    }
+
+    /*
+     * Refills the feeds that have run low, lowest first, and drops idle ones. Only
+     * discovery.feed.refills.per.tick feeds are rebuilt per run so the cost stays bounded.
+     */
+    @Scheduled(fixedDelayString = "${discovery.feed.refill.interval.ms:5000}")
+    public void refillLowFeeds() {
+        long now = System.currentTimeMillis();
+        feeds.entrySet().removeIf(entry -> now - entry.getValue().lastRead > idleMillis);
+
+        List<Map.Entry<String, Feed>> low = new ArrayList<>();
+        for (Map.Entry<String, Feed> entry : feeds.entrySet()) {
+            Feed feed = entry.getValue();
+            boolean mayHaveMore = !feed.exhausted || now - feed.refilledAt > EXHAUSTED_RETRY_MILLIS;
+            if (feed.built && mayHaveMore && feed.size() < lowWatermark) {
+                low.add(entry);
+            }
+        }
+        low.sort(Comparator.comparingInt(entry -> entry.getValue().size()));
+
+        for (int i = 0; i < low.size() && i < refillsPerTick; i++) {
+            Map.Entry<String, Feed> entry = low.get(i);
+            try {
+                refill(entry.getKey(), entry.getValue());
+                latencyMetrics.increment("discovery.feed.backgroundRefill");
+            } catch (Exception e) {
+                logger.warning("Failed to refill discovery feed for " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Reruns the discovery pipeline for the user and replaces their queue with the best
+     * discovery.feed.capacity candidates.
+     */
+    private void refill(String userId, Feed feed) {
+        long start = System.nanoTime();
+
+        synchronized (feed) {
+            feed.swipedDuringRefill.clear();
+        }
+
+        DiscoveryLookups lookups = profileService.doGetDiscoveryLookups(userId, true);
+        BitSet candidates = profileService.doGetCandidates(userId, feed.genderFilter, feed.attributeFilters, lookups);
+        Iterator<ProfileCard> ranked = profileService.doIterateProfiles(userId, candidates, feed.byCompatibility, lookups);
+
+        ArrayDeque<String> queue = new ArrayDeque<>(capacity);
+        while (queue.size() < capacity && ranked.hasNext()) {
+            queue.add(ranked.next().getUserId());
+        }
+
+        synchronized (feed) {
+            queue.removeAll(feed.swipedDuringRefill);
+            feed.queue = queue;
+            feed.built = true;
+            // Every candidate fit, so only new profiles can add more
+            feed.exhausted = candidates.cardinality() <= capacity;
+            feed.refilledAt = System.currentTimeMillis();
+        }
+
+        latencyMetrics.recordSince("discovery.feed.refill", start);
+    }
+
+    private static String describe(String genderFilter, Map<String, List<String>> attributeFilters,
+            boolean byCompatibility) {
+        return genderFilter + "|" + new TreeMap<>(attributeFilters) + "|" + byCompatibility;
+    }
+
+    private static class Feed {
+        private final String genderFilter;
+        private final Map<String, List<String>> attributeFilters;
+        private final boolean byCompatibility;
+        private final String parameters;
+
+        // Guarded by the Feed instance
+        private ArrayDeque<String> queue = new ArrayDeque<>();
+        private final Set<String> swipedDuringRefill = new HashSet<>();
+        private volatile boolean built = false;
+        private volatile boolean exhausted = false;
+        private volatile long refilledAt = 0;
+        private volatile long lastRead = System.currentTimeMillis();
+
+        private Feed(String genderFilter, Map<String, List<String>> attributeFilters, boolean byCompatibility,
+                String parameters) {
+            this.genderFilter = genderFilter;
+            this.attributeFilters = attributeFilters;
+            this.byCompatibility = byCompatibility;
+            this.parameters = parameters;
+        }
+
+        private synchronized int size() {
+            return queue.size();
+        }
+    }
+}
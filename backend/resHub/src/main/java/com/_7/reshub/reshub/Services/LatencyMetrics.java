@@ -0,0 +1,141 @@
+package com._7.reshub.reshub.Services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * In-process latency and counter metrics, keyed by name (for example "discovery.swipedOn").
+ *
+ * Gauges are read from a supplier when a snapshot is taken, for values that are a current state
+ * (cache sizes, for example) rather than a running total.
+ *
+ * Each timer keeps a count, a total, a max and a histogram with power-of-two microsecond buckets,
+ * so recording is a few atomic adds and percentiles are approximate to within a factor of two.
+ * Values are cumulative since startup and can be read through /api/metrics.
+ */
+@Service
+public class LatencyMetrics {
+
+    // Bucket i holds samples below 2^i microseconds; the last bucket catches everything above ~35 minutes
+    private static final int BUCKETS = 32;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+    /*
+     * Records one sample for the named timer.
+     */
+    public void record(String name, long durationNanos) {
+        timers.computeIfAbsent(name, key -> new Timer()).record(durationNanos);
+    }
+
+    /*
+     * Records the time elapsed since startNanos (a System.nanoTime() value) for the named timer.
+     */
+    public void recordSince(String name, long startNanos) {
+        record(name, System.nanoTime() - startNanos);
+    }
+
+    /*
+     * Adds one to the named counter.
+     */
+    public void increment(String name) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    /*
+     * Registers (or replaces) a gauge whose current value is read on every snapshot.
+     */
+    public void registerGauge(String name, Supplier<Number> value) {
+        gauges.put(name, value);
+    }
+
+    /*
+     * Returns every timer (count, mean, p50, p95, p99 and max in milliseconds), counter and
+     * gauge, sorted by name.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> timerValues = new TreeMap<>();
+        timers.forEach((name, timer) -> timerValues.put(name, timer.snapshot()));
+
+        Map<String, Object> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+
+        Map<String, Object> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.get()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timers", timerValues);
+        result.put("counters", counterValues);
+        result.put("gauges", gaugeValues);
+        return result;
+    }
+
+    private static class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private void record(long durationNanos) {
+            long nanos = Math.max(0, durationNanos);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+        }
+
+        private Map<String, Object> snapshot() {
+            long samples = count.sum();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", samples);
+            result.put("meanMs", samples == 0 ? 0.0 : toMillis(totalNanos.sum() / samples));
+            result.put("p50Ms", percentile(0.50));
+            result.put("p95Ms", percentile(0.95));
+            result.put("p99Ms", percentile(0.99));
+            result.put("maxMs", toMillis(maxNanos.get()));
+            return result;
+        }
+
+        // Upper bound of the bucket holding the given percentile, capped at the max
+        private double percentile(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long samples = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                samples += counts[i];
+            }
+            if (samples == 0) {
+                return 0.0;
+            }
+
+            long rank = (long) Math.ceil(percentile * samples);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min((1L << i) / 1000.0, toMillis(maxNanos.get()));
+                }
+            }
+            return toMillis(maxNanos.get());
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
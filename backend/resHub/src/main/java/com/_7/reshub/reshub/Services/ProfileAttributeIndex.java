@@ -0,0 +1,167 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Models.Profile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+ * Bitmap index over the low-cardinality profile attributes used by discovery filters.
+ *
+ * Every attribute is dictionary-encoded: each distinct value gets a small int code, each
+ * profile stores one code per attribute and every code owns a BitSet of the profile ordinals
+ * that have that value. A filter is then an OR of the bitmaps for the accepted values of an
+ * attribute, ANDed across attributes.
+ *
+ * Not thread-safe; DiscoveryCatalogService guards it with its lock.
+ */
+public class ProfileAttributeIndex {
+
+    public static final Map<String, Function<Profile, String>> ATTRIBUTES;
+
+    static {
+        Map<String, Function<Profile, String>> attributes = new LinkedHashMap<>();
+        attributes.put("gender", Profile::getGender);
+        attributes.put("smokingStatus", Profile::getSmokingStatus);
+        attributes.put("sleepSchedule", Profile::getSleepSchedule);
+        attributes.put("cleanlinessLevel", Profile::getCleanlinessLevel);
+        attributes.put("noiseLevel", Profile::getNoiseLevel);
+        attributes.put("hasPets", Profile::getHasPets);
+        attributes.put("dietaryPreference", Profile::getDietaryPreference);
+        attributes.put("residence", Profile::getResidence);
+        attributes.put("graduationYear", Profile::getGraduationYear);
+        ATTRIBUTES = Collections.unmodifiableMap(attributes);
+    }
+
+    private static final int NO_VALUE = -1;
+
+    private final List<String> attributeNames = new ArrayList<>(ATTRIBUTES.keySet());
+    private final List<Map<String, Integer>> dictionaries = new ArrayList<>();
+    private final List<List<BitSet>> bitmaps = new ArrayList<>();
+    private final BitSet live = new BitSet();
+
+    // codes[attribute][ordinal] is the dictionary code of that profile's value
+    private int[][] codes;
+
+    public ProfileAttributeIndex() {
+        codes = new int[attributeNames.size()][];
+        for (int attribute = 0; attribute < attributeNames.size(); attribute++) {
+            dictionaries.add(new HashMap<>());
+            bitmaps.add(new ArrayList<>());
+            codes[attribute] = new int[0];
+        }
+    }
+
+    /*
+     * Indexes (or re-indexes) the profile stored at the given ordinal.
+     */
+    public void set(int ordinal, Profile profile) {
+        ensureCapacity(ordinal + 1);
+
+        int attribute = 0;
+        for (Function<Profile, String> getter : ATTRIBUTES.values()) {
+            int oldCode = codes[attribute][ordinal];
+            int newCode = encode(attribute, getter.apply(profile));
+
+            if (oldCode != newCode) {
+                if (oldCode != NO_VALUE) {
+                    bitmaps.get(attribute).get(oldCode).clear(ordinal);
+                }
+                bitmaps.get(attribute).get(newCode).set(ordinal);
+                codes[attribute][ordinal] = newCode;
+            }
+            attribute++;
+        }
+
+        live.set(ordinal);
+    }
+
+    /*
+     * Removes the profile stored at the given ordinal from every bitmap.
+     */
+    public void clear(int ordinal) {
+        if (ordinal >= live.length() || !live.get(ordinal)) {
+            return;
+        }
+
+        for (int attribute = 0; attribute < attributeNames.size(); attribute++) {
+            int code = codes[attribute][ordinal];
+            if (code != NO_VALUE) {
+                bitmaps.get(attribute).get(code).clear(ordinal);
+                codes[attribute][ordinal] = NO_VALUE;
+            }
+        }
+
+        live.clear(ordinal);
+    }
+
+    /*
+     * Returns the ordinals of every indexed profile that matches all of the filters. Each filter
+     * maps an attribute name to the accepted values; a profile matches a filter if its value is
+     * any of them (case-insensitive). Unknown attribute names are rejected.
+     */
+    public BitSet match(Map<String, ? extends Collection<String>> filters) {
+        BitSet result = (BitSet) live.clone();
+
+        for (Map.Entry<String, ? extends Collection<String>> filter : filters.entrySet()) {
+            int attribute = attributeNames.indexOf(filter.getKey());
+            if (attribute < 0) {
+                throw new IllegalArgumentException("Unknown filter attribute: " + filter.getKey());
+            }
+
+            BitSet accepted = new BitSet();
+            for (String value : filter.getValue()) {
+                Integer code = dictionaries.get(attribute).get(normalize(value));
+                if (code != null) {
+                    accepted.or(bitmaps.get(attribute).get(code));
+                }
+            }
+
+            result.and(accepted);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    private int encode(int attribute, String value) {
+        Map<String, Integer> dictionary = dictionaries.get(attribute);
+        String normalized = normalize(value);
+
+        Integer code = dictionary.get(normalized);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.put(normalized, code);
+            bitmaps.get(attribute).add(new BitSet());
+        }
+        return code;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void ensureCapacity(int size) {
+        if (codes[0].length >= size) {
+            return;
+        }
+
+        int newSize = Math.max(size, Math.max(16, codes[0].length * 2));
+        for (int attribute = 0; attribute < codes.length; attribute++) {
+            int oldSize = codes[attribute].length;
+            codes[attribute] = Arrays.copyOf(codes[attribute], newSize);
+            Arrays.fill(codes[attribute], oldSize, newSize, NO_VALUE);
+        }
+    }
+}
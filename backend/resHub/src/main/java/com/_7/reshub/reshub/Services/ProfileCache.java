@@ -0,0 +1,217 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Read-through cache of profile items, for the reads that GetItem the same profiles over and over
+ * (viewing a profile, blocked lists, display names, existence checks).
+ *
+ * - At most profiles.cache.max.entries profiles are kept, least recently used dropped first, and
+ *   an entry is reloaded once it is older than profiles.cache.ttl.ms. Missing profiles are cached
+ *   too, so repeated checks for a deleted user do not go to DynamoDB each time.
+ * - Concurrent misses for the same profile share one GetItem.
+ * - Writers either put the item they just wrote (an UpdateItem with ReturnValues ALL_NEW) or
+ *   invalidate it. A load that was in flight when a profile was written is not cached, so it cannot
+ *   put back the old version. Either also drops the name DisplayNameResolver holds for the user.
+ *
+ * The cache is local to this instance, so a write through another instance is only seen here
+ * after the TTL. Items are shared between callers and must not be modified.
+ */
+@Service
+public class ProfileCache {
+
+    private static final int WRITE_STRIPES = 256;
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private DisplayNameResolver displayNameResolver;
+
+    // profiles.cache.max.entries in application.properties
+    @Value("${profiles.cache.max.entries:10000}")
+    private int maxEntries;
+
+    // profiles.cache.ttl.ms in application.properties
+    @Value("${profiles.cache.ttl.ms:300000}")
+    private long ttlMillis;
+
+    // Access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                latencyMetrics.increment("profiles.cache.evicted");
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final Map<String, CompletableFuture<Map<String, AttributeValue>>> loading = new ConcurrentHashMap<>();
+    private final AtomicLongArray writeCounts = new AtomicLongArray(WRITE_STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    void registerGauges() {
+        latencyMetrics.registerGauge("profiles.cache.size", this::size);
+        latencyMetrics.registerGauge("profiles.cache.hitRate", this::hitRate);
+    }
+
+    /*
+     * Returns the user's profile item, or null if they have no profile.
+     */
+    public Map<String, AttributeValue> get(String userId) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && now - entry.loadedAt < ttlMillis) {
+                hits.increment();
+                latencyMetrics.increment("profiles.cache.hit");
+                return entry.item;
+            }
+            if (entry != null) {
+                entries.remove(userId);
+                latencyMetrics.increment("profiles.cache.expired");
+            }
+        }
+        misses.increment();
+        latencyMetrics.increment("profiles.cache.miss");
+
+        CompletableFuture<Map<String, AttributeValue>> load = new CompletableFuture<>();
+        CompletableFuture<Map<String, AttributeValue>> existing = loading.putIfAbsent(userId, load);
+        if (existing != null) {
+            return join(existing);
+        }
+
+        try {
+            Map<String, AttributeValue> item = load(userId);
+            load.complete(item);
+            return item;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(userId, load);
+        }
+    }
+
+    /*
+     * Replaces the cached profile with an item that was just written, for example the ALL_NEW
+     * attributes of an UpdateItem. The item must be the whole profile.
+     */
+    public void put(Map<String, AttributeValue> item) {
+        if (item == null || !item.containsKey("userId")) {
+            return;
+        }
+        String userId = item.get("userId").s();
+        synchronized (entries) {
+            writeCounts.incrementAndGet(stripe(userId));
+            entries.put(userId, new Entry(Collections.unmodifiableMap(item), System.currentTimeMillis()));
+        }
+        loading.remove(userId);
+        displayNameResolver.invalidate(userId);
+    }
+
+    /*
+     * Drops the cached profile after a write whose result is not at hand.
+     */
+    public void invalidate(String userId) {
+        synchronized (entries) {
+            writeCounts.incrementAndGet(stripe(userId));
+            entries.remove(userId);
+        }
+        // Later readers start a fresh load instead of joining one that may return the old item
+        loading.remove(userId);
+        displayNameResolver.invalidate(userId);
+    }
+
+    private Map<String, AttributeValue> load(String userId) {
+        long writeStamp = writeCounts.get(stripe(userId));
+        long start = System.nanoTime();
+
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(dynamoDbConfig.getUserProfilesTableName())
+                .key(Map.of("userId", AttributeValue.builder().s(userId).build()))
+                .build());
+        latencyMetrics.recordSince("profiles.cache.load", start);
+
+        Map<String, AttributeValue> item = response.hasItem() && !response.item().isEmpty()
+                ? Collections.unmodifiableMap(response.item())
+                : null;
+
+        synchronized (entries) {
+            // Skip caching if the profile was written while we were reading it
+            if (writeCounts.get(stripe(userId)) == writeStamp) {
+                entries.put(userId, new Entry(item, System.currentTimeMillis()));
+            }
+        }
+        return item;
+    }
+
+    private static Map<String, AttributeValue> join(CompletableFuture<Map<String, AttributeValue>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            // Surface the DynamoDB exception the way a direct call would
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static int stripe(String userId) {
+        return Math.floorMod(userId.hashCode(), WRITE_STRIPES);
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private static final class Entry {
+        // null when the user has no profile
+        private final Map<String, AttributeValue> item;
+        private final long loadedAt;
+
+        private Entry(Map<String, AttributeValue> item, long loadedAt) {
+            this.item = item;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/*
+ * The match and chat adjacency of a user, stored as string sets (matches, chats) on their profile.
+ * Adding or removing an edge is one UpdateItem with ADD or DELETE, so it costs the same however
+ * many edges the user has and concurrent edge changes cannot overwrite each other.
+ *
+ * Profiles written before this kept both attributes as lists, which ADD and DELETE cannot touch.
+ * The first edge change on such a profile converts the list to a set with a write conditioned on
+ * the list being unchanged, then applies the change; values() reads either form.
+ */
+@Service
+public class ProfileEdgeStore {
+
+    private static final Logger logger = Logger.getLogger(ProfileEdgeStore.class.getName());
+
+    public static final String MATCHES = "matches";
+    public static final String CHATS = "chats";
+
+    private static final int MAX_MIGRATION_ATTEMPTS = 5;
+
+    // Only applies to existing profiles, and only to sets; lists take the migration path
+    private static final String SET_CONDITION =
+            "attribute_exists(userId) AND (attribute_not_exists(#edges) OR attribute_type(#edges, :ss))";
+
+    private enum Migration { DONE, RETRY, NO_PROFILE }
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private ProfileCache profileCache;
+
+    /*
+     * Adds value to the user's edge set (MATCHES or CHATS). Does nothing if the profile does not
+     * exist or the value is already there.
+     */
+    public void add(String userId, String attribute, String value) {
+        update(userId, attribute, value, true);
+    }
+
+    /*
+     * Removes value from the user's edge set. Does nothing if it is not there.
+     */
+    public void remove(String userId, String attribute, String value) {
+        update(userId, attribute, value, false);
+    }
+
+    /*
+     * Converts the user's matches and chats to sets if they are still lists, for writers that
+     * cannot take the migration path themselves (a transaction). Returns false if the profile
+     * does not exist.
+     */
+    public boolean convertToSets(String userId) {
+        for (String attribute : List.of(MATCHES, CHATS)) {
+            Migration result = Migration.RETRY;
+            for (int attempt = 0; attempt < MAX_MIGRATION_ATTEMPTS && result == Migration.RETRY; attempt++) {
+                result = migrate(userId, attribute, null, false);
+            }
+            if (result == Migration.NO_PROFILE) {
+                return false;
+            }
+            if (result == Migration.RETRY) {
+                throw new IllegalStateException("Could not convert " + attribute + " of " + userId + " to a set");
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Returns the values of an edge attribute read from a profile, whether it is stored as a
+     * string set or (not yet migrated) as a list of strings.
+     */
+    public static List<String> values(AttributeValue attribute) {
+        if (attribute == null) {
+            return Collections.emptyList();
+        }
+        if (attribute.hasSs()) {
+            return new ArrayList<>(attribute.ss());
+        }
+        if (attribute.hasL()) {
+            List<String> values = new ArrayList<>(attribute.l().size());
+            for (AttributeValue element : attribute.l()) {
+                values.add(element.s());
+            }
+            return values;
+        }
+        return Collections.emptyList();
+    }
+
+    private void update(String userId, String attribute, String value, boolean add) {
+        for (int attempt = 0; attempt < MAX_MIGRATION_ATTEMPTS; attempt++) {
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(dynamoDbConfig.getUserProfilesTableName())
+                        .key(profileKey(userId))
+                        .updateExpression((add ? "ADD" : "DELETE") + " #edges :value")
+                        .conditionExpression(SET_CONDITION)
+                        .expressionAttributeNames(Map.of("#edges", attribute))
+                        .expressionAttributeValues(Map.of(
+                                ":value", AttributeValue.builder().ss(value).build(),
+                                ":ss", AttributeValue.builder().s("SS").build()))
+                        .build());
+                profileCache.invalidate(userId);
+                return;
+            } catch (ConditionalCheckFailedException e) {
+                // The profile is missing, or the attribute is still a list
+            }
+
+            if (migrate(userId, attribute, value, add) != Migration.RETRY) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Could not update " + attribute + " of " + userId + " after "
+                + MAX_MIGRATION_ATTEMPTS + " attempts");
+    }
+
+    /*
+     * Converts a list attribute to a set with the change applied (none if value is null).
+     * Returns RETRY when the set write should be tried again: the attribute is already a set, or
+     * someone else changed or converted it first.
+     */
+    private Migration migrate(String userId, String attribute, String value, boolean add) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(dynamoDbConfig.getUserProfilesTableName())
+                .key(profileKey(userId))
+                .projectionExpression("userId, #edges")
+                .expressionAttributeNames(Map.of("#edges", attribute))
+                .consistentRead(true)
+                .build());
+        if (!response.hasItem() || response.item().isEmpty()) {
+            logger.warning("No profile " + userId + " to update " + attribute + " on");
+            return Migration.NO_PROFILE;
+        }
+
+        AttributeValue current = response.item().get(attribute);
+        if (current == null || !current.hasL()) {
+            // Already a set (or gone): the set write will go through now
+            return value == null ? Migration.DONE : Migration.RETRY;
+        }
+
+        Set<String> edges = new LinkedHashSet<>(values(current));
+        if (value != null && add) {
+            edges.add(value);
+        } else if (value != null) {
+            edges.remove(value);
+        }
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":old", current);
+        UpdateItemRequest.Builder request = UpdateItemRequest.builder()
+                .tableName(dynamoDbConfig.getUserProfilesTableName())
+                .key(profileKey(userId))
+                .conditionExpression("#edges = :old")
+                .expressionAttributeNames(Map.of("#edges", attribute));
+        if (edges.isEmpty()) {
+            // A string set cannot be empty
+            request.updateExpression("REMOVE #edges");
+        } else {
+            request.updateExpression("SET #edges = :edges");
+            values.put(":edges", AttributeValue.builder().ss(edges).build());
+        }
+
+        try {
+            dynamoDbClient.updateItem(request.expressionAttributeValues(values).build());
+            profileCache.invalidate(userId);
+            latencyMetrics.increment("profiles.edges.migrated");
+            return Migration.DONE;
+        } catch (ConditionalCheckFailedException e) {
+            return Migration.RETRY;
+        }
+    }
+
+    private static Map<String, AttributeValue> profileKey(String userId) {
+        return Map.of("userId", AttributeValue.builder().s(userId).build());
+    }
+}
@@ -1,26 +1,42 @@
 package com._7.reshub.reshub.Services;
 
 import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Models.DiscoveryCursor;
+import com._7.reshub.reshub.Models.DiscoveryLookups;
 import com._7.reshub.reshub.Models.Profile;
-import com._7.reshub.reshub.Models.ProfileMetadata;
+import com._7.reshub.reshub.Models.ProfileCard;
+import com._7.reshub.reshub.Models.ProfilePage;
+import com._7.reshub.reshub.Utils.ProfileItemMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
-import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
-import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 @Service
@@ -35,137 +51,356 @@ public class ProfileService {
     @Autowired
     private SwipeService swipeService;
 
+    @Autowired
+    private DiscoveryCatalogService discoveryCatalogService;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private ProfileCache profileCache;
+
+    @Autowired
+    private DisplayNameResolver displayNameResolver;
+
+    @Autowired
+    @Qualifier("discoveryLookupExecutor")
+    private ExecutorService discoveryLookupExecutor;
+
+    // discovery.lookup.timeout.ms in application.properties
+    @Value("${discovery.lookup.timeout.ms:3000}")
+    private long lookupTimeoutMs;
+
+    private static final Logger logger = Logger.getLogger(ProfileService.class.getName());
+
+    private static final int FIRST_STREAM_CHUNK = 20;
+    private static final int MAX_STREAM_CHUNK = 1000;
+
     /*
      * Handles retrieving information for the given user id and returns a Profile
      * object
      */
     public Profile doGetProfile(String userId) {
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-            .tableName(dynamoDbConfig.getUserProfilesTableName())
-            .key(key)
-            .build();
+        Map<String, AttributeValue> item = profileCache.get(userId);
 
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-
-        if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
-    
-            Profile profile = convertDynamoItemToProfile(item);
+        if (item != null) {
+            Profile profile = ProfileItemMapper.toProfile(item);
             return profile;
         }
 
         return null;
     }
 
-    public List<Profile> doGetProfiles(String userId, String genderFilter, boolean filterOutSwipedOn) {
-        // Fetch blocked users list
-        List<String> blockedUsers = doGetBlockedUsers(userId);
-        
-        // Scan request to fetch profiles from DynamoDB
-        ScanRequest scanRequest = ScanRequest.builder()
-            .tableName(dynamoDbConfig.getUserProfilesTableName())
-            .build();
-        ScanResponse scanResponse = dynamoDbClient.scan(scanRequest);
-        
-        // Convert DynamoDB items to Profile object and filter by gender and exclude logged-in user
-        List<Profile> profiles = scanResponse.items().stream()
-            .filter(item -> !item.get("userId").s().equals(userId))
-            .filter(item -> !blockedUsers.contains(item.get("userId").s()))
-            .filter(item -> "All".equalsIgnoreCase(genderFilter) || 
-                    (item.containsKey("gender") && item.get("gender").s().equalsIgnoreCase(genderFilter)))
-            .map(this::convertDynamoItemToProfile)
-            .collect(Collectors.toList());
-    
-        return profiles;
+    /*
+     * Fetches everything a discovery request needs besides the profiles themselves. The reads
+     * don't depend on each other, so they run at the same time on the lookup executor and the
+     * request waits for the slowest one (at most discovery.lookup.timeout.ms):
+     *  - the catalog load (a no-op once the catalog is loaded)
+     *  - the users the viewer already swiped on (only if filterOutSwipedOn)
+     *  - the users who swiped right on the viewer
+     * Without the liked-by list the deck is still correct, just not boosted, so a failure there
+     * degrades to an empty set. Any other failure fails the request.
+     */
+    public DiscoveryLookups doGetDiscoveryLookups(String userId, boolean filterOutSwipedOn) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lookupTimeoutMs);
+
+        // The catalog load and the swiped-on list are required, so a full pool fails the request
+        Future<List<String>> catalog = discoveryCatalogService.isLoaded()
+            ? null
+            : submitOrFail("discovery.lookup.catalog", () -> {
+                discoveryCatalogService.ensureLoaded();
+                return Collections.emptyList();
+            });
+        Future<List<String>> swipedOn = filterOutSwipedOn
+            ? submitOrFail("discovery.lookup.swipedOn", () -> swipeService.doGetAllSwipedOn(userId))
+            : null;
+        Future<List<String>> likedBy;
+        try {
+            likedBy = submitTimed("discovery.lookup.likedBy", () -> swipeService.doGetAllUsersWhoSwipedRightOn(userId));
+        } catch (RejectedExecutionException e) {
+            likedBy = null;
+        }
+
+        try {
+            // Ordinals are only known once the catalog is loaded
+            if (catalog != null) {
+                join(catalog, deadline);
+            }
+
+            BitSet swipedOnOrdinals = swipedOn == null
+                ? new BitSet()
+                : discoveryCatalogService.toOrdinals(join(swipedOn, deadline));
+
+            BitSet likedByOrdinals;
+            try {
+                if (likedBy == null) {
+                    throw new RuntimeException("Discovery lookup pool is full");
+                }
+                likedByOrdinals = discoveryCatalogService.toOrdinals(join(likedBy, deadline));
+            } catch (RuntimeException e) {
+                latencyMetrics.increment("discovery.lookup.likedBy.degraded");
+                logger.warning("Liked-by lookup failed for " + userId + ", continuing without it: " + e.getMessage());
+                likedByOrdinals = new BitSet();
+            }
+
+            return new DiscoveryLookups(swipedOnOrdinals, likedByOrdinals);
+        } finally {
+            // Stop the per-user reads the request has given up on. The catalog load is left to
+            // finish: interrupting it would abandon the scan, and later requests wait on it anyway.
+            if (likedBy != null) {
+                likedBy.cancel(true);
+            }
+            if (swipedOn != null) {
+                swipedOn.cancel(true);
+            }
+        }
     }
 
-    public List<Profile> doSortProfiles(String userId, List<Profile> profiles) {
-        List<String> usersWhoSwipedRight = swipeService.doGetAllUsersWhoSwipedRightOn(userId);
-    
-        // Precompute liked status and last active times using parallel streams to improve load times
-        List<ProfileMetadata> profileMetadataList = profiles.parallelStream()
-            .map(profile -> {
-                boolean isLiked = usersWhoSwipedRight.contains(profile.getUserId().toString());
-    
-                // Get the last time active or set it to a very old timestamp if null
-                long lastActive = (profile.getLastTimeActive() != null)
-                    ? profile.getLastTimeActive().toEpochMilli()
-                    : Long.MIN_VALUE;
-    
-                return new ProfileMetadata(profile, isLiked, lastActive);
-            })
-            .collect(Collectors.toList());
-    
-        // Sort profiles: first by liked status (true comes first), then by last time active (most recent comes first)
-        profileMetadataList.sort((metadata1, metadata2) -> {
-            if (metadata1.getIsLiked() != metadata2.getIsLiked()) {
-                return Boolean.compare(metadata2.getIsLiked(), metadata1.getIsLiked());
+    private <T> Future<T> submitOrFail(String metric, Callable<T> lookup) {
+        try {
+            return submitTimed(metric, lookup);
+        } catch (RejectedExecutionException e) {
+            latencyMetrics.increment("discovery.lookup.rejected");
+            throw new RuntimeException("Discovery lookups are saturated, try again shortly", e);
+        }
+    }
+
+    private <T> Future<T> submitTimed(String metric, Callable<T> lookup) {
+        return discoveryLookupExecutor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                return lookup.call();
+            } finally {
+                latencyMetrics.recordSince(metric, start);
             }
-    
-            return Long.compare(metadata2.getLastActive(), metadata1.getLastActive());
         });
-    
-        return profileMetadataList.stream()
-            .map(ProfileMetadata::getProfile)
-            .collect(Collectors.toList());
     }
-    
-    private Profile convertDynamoItemToProfile(Map<String, AttributeValue> item) {
-        return new Profile(
-            item.getOrDefault("userId", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("fullName", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("gender", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("major", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("minor", AttributeValue.builder().s("").build()).s(),
-            Integer.parseInt(item.getOrDefault("age", AttributeValue.builder().n("0").build()).n()),
-            item.getOrDefault("residence", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("hobbies", AttributeValue.builder().l(Collections.emptyList()).build()).l()
-                .stream().map(AttributeValue::s).collect(Collectors.toList()),
-            item.getOrDefault("graduationYear", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("bio", AttributeValue.builder().s("").build()).s(),
-            Optional.ofNullable(item.getOrDefault("lastTimeActive", AttributeValue.builder().s("").build()).s())
-                .filter(s -> !s.isEmpty())
-                .map(Instant::parse)
-                .orElse(null),
-            item.getOrDefault("profilePicUrl", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("smokingStatus", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("cleanlinessLevel", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("sleepSchedule", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("guestFrequency", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("hasPets", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("noiseLevel", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("sharingCommonItems", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("dietaryPreference", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("allergies", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateSmokingPreference", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateCleanlinessLevel", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateSleepSchedule", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateGuestFrequency", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommatePetPreference", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateNoiseTolerance", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateSharingCommonItems", AttributeValue.builder().s("").build()).s(),
-            item.getOrDefault("roommateDietaryPreference", AttributeValue.builder().s("").build()).s()
-        );
+
+    private static <T> T join(Future<T> future, long deadlineNanos) {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Discovery lookup timed out", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Discovery lookup failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for discovery lookups", e);
+        }
     }
-    
-    
+
     /*
-     * Handles retrieving the user ids of the users blocked by the given user.
+     * Returns the catalog ordinals of the candidate profiles for the given user. The gender filter
+     * and any other attribute filters (attribute name -> accepted values) are answered by the
+     * catalog's bitmap index, and blocked and already swiped on users (lookups.getSwipedOn()) are
+     * removed from the same bitmap.
      */
-    public List<String> doGetBlockedUsers(String userId) {
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
+    public BitSet doGetCandidates(String userId, String genderFilter, Map<String, List<String>> attributeFilters,
+            DiscoveryLookups lookups) {
+        Map<String, List<String>> filters = new HashMap<>(attributeFilters);
+        if (genderFilter != null && !"All".equalsIgnoreCase(genderFilter)) {
+            filters.put("gender", List.of(genderFilter));
+        }
 
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .build();
+        return discoveryCatalogService.findCandidates(userId, filters, lookups.getSwipedOn());
+    }
+
+    /*
+     * Discovery order: profiles that liked the user first, then most recently active first.
+     * Ties are broken by catalog ordinal so the order is total and stays stable across pages.
+     */
+    public List<ProfileCard> doSortProfiles(BitSet candidates, DiscoveryLookups lookups) {
+        return doGetProfilePage(candidates, Math.max(1, candidates.cardinality()), null, lookups).getProfiles();
+    }
+
+    /*
+     * Returns the page of at most limit profiles that come after the cursor in discovery order.
+     * The few liked-by candidates are ordered directly; everyone else comes from walking the
+     * catalog's activity index from the cursor position, which stops as soon as the page is full,
+     * so the candidates are never sorted.
+     */
+    public ProfilePage doGetProfilePage(BitSet candidates, int limit, DiscoveryCursor cursor,
+            DiscoveryLookups lookups) {
+        BitSet liked = (BitSet) candidates.clone();
+        liked.and(lookups.getLikedBy());
+
+        List<ProfileCard> page = new ArrayList<>(Math.min(limit, candidates.cardinality()));
+        boolean lastLiked = false;
+        long lastKey = 0;
+        boolean hasMore = false;
+
+        // Profiles that liked the user come first; the cursor is past them once it points at someone else.
+        // Their activity keys move on every heartbeat, so the cursor lists who was already served.
+        List<String> servedLiked = new ArrayList<>();
+        if (cursor == null || cursor.getIsLiked()) {
+            Set<String> alreadyServed = cursor == null
+                ? Collections.emptySet()
+                : new HashSet<>(cursor.getServedLiked());
+            servedLiked.addAll(alreadyServed);
+
+            for (long key : discoveryCatalogService.getActivityKeys(liked)) {
+                ProfileCard card = discoveryCatalogService.getCard(ActivityIndex.ordinalOf(key));
+                if (card == null || alreadyServed.contains(card.getUserId())) {
+                    continue;
+                }
+                if (page.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+
+                page.add(card);
+                servedLiked.add(card.getUserId());
+                lastLiked = true;
+            }
+        }
 
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
+        if (!hasMore) {
+            long after = Long.MAX_VALUE;
+            if (cursor != null && !cursor.getIsLiked()) {
+                // Rebuilt from the user's ordinal here, which may differ from where the cursor was made
+                int ordinal = discoveryCatalogService.getOrdinal(cursor.getUserId());
+                if (ordinal < 0) {
+                    throw new IllegalArgumentException("Invalid cursor: unknown user " + cursor.getUserId());
+                }
+                after = ActivityIndex.key(cursor.getSortValue(), ordinal);
+            }
+            // A profile that becomes active mid-walk can show up twice, once at each position
+            BitSet seen = new BitSet();
+
+            Iterator<Long> walk = discoveryCatalogService.walkByActivity(after);
+            while (walk.hasNext()) {
+                long key = walk.next();
+                int ordinal = ActivityIndex.ordinalOf(key);
+                if (!candidates.get(ordinal) || liked.get(ordinal) || seen.get(ordinal)) {
+                    continue;
+                }
+                if (page.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+
+                ProfileCard card = discoveryCatalogService.getCard(ordinal);
+                if (card != null) {
+                    seen.set(ordinal);
+                    page.add(card);
+                    lastLiked = false;
+                    lastKey = key;
+                }
+            }
+        }
+
+        String nextCursor = null;
+        if (hasMore && !page.isEmpty()) {
+            String lastUserId = page.get(page.size() - 1).getUserId();
+            nextCursor = lastLiked
+                ? new DiscoveryCursor(DiscoveryCursor.SORT_RECENT, true, 0, lastUserId, servedLiked).encode()
+                : new DiscoveryCursor(DiscoveryCursor.SORT_RECENT, false, ActivityIndex.secondsOf(lastKey),
+                        lastUserId).encode();
+        }
+
+        return new ProfilePage(page, nextCursor);
+    }
 
-        if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
+    /*
+     * Compatibility order: profiles that liked the user first, then by roommate compatibility
+     * score (highest first). Ties are broken by catalog ordinal so the order stays stable across pages.
+     */
+    public List<ProfileCard> doRankProfiles(String userId, BitSet candidates, DiscoveryLookups lookups) {
+        long[] ranked = discoveryCatalogService.rankByCompatibility(userId, candidates, lookups.getLikedBy(),
+                candidates.cardinality(), Long.MAX_VALUE);
+
+        return toProfiles(ranked, ranked.length);
+    }
+
+    /*
+     * Returns the page of at most limit profiles that come after the cursor in compatibility order.
+     */
+    public ProfilePage doGetCompatibilityPage(String userId, BitSet candidates, int limit, DiscoveryCursor cursor,
+            DiscoveryLookups lookups) {
+        long after = Long.MAX_VALUE;
+        if (cursor != null) {
+            int ordinal = discoveryCatalogService.getOrdinal(cursor.getUserId());
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("Invalid cursor: unknown user " + cursor.getUserId());
+            }
+            after = CompatibilityScorer.rankKey(cursor.getIsLiked(), (int) cursor.getSortValue(), ordinal);
+        }
+
+        // Ask for one extra profile to find out whether there is another page
+        long[] ranked = discoveryCatalogService.rankByCompatibility(userId, candidates, lookups.getLikedBy(),
+                limit + 1, after);
+        int pageSize = Math.min(limit, ranked.length);
+
+        String nextCursor = null;
+        if (ranked.length > limit && pageSize > 0) {
+            long last = ranked[pageSize - 1];
+            ProfileCard lastProfile = discoveryCatalogService.getCard(CompatibilityScorer.ordinalOf(last));
+            if (lastProfile != null) {
+                nextCursor = new DiscoveryCursor(DiscoveryCursor.SORT_COMPATIBILITY, CompatibilityScorer.isLiked(last),
+                        CompatibilityScorer.scoreOf(last), lastProfile.getUserId()).encode();
+            }
+        }
+
+        return new ProfilePage(toProfiles(ranked, pageSize), nextCursor);
+    }
+
+    /*
+     * Returns the ranked deck as a lazy iterator. Cards are produced in pages that start small and
+     * double in size (up to MAX_STREAM_CHUNK), so the first cards are ready after one cheap pass over
+     * the candidates and only one page is ever held in memory.
+     */
+    public Iterator<ProfileCard> doIterateProfiles(String userId, BitSet candidates, boolean byCompatibility,
+            DiscoveryLookups lookups) {
+        return new Iterator<>() {
+            private Iterator<ProfileCard> page = Collections.emptyIterator();
+            private DiscoveryCursor cursor = null;
+            private int chunk = FIRST_STREAM_CHUNK;
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !exhausted) {
+                    ProfilePage next = byCompatibility
+                        ? doGetCompatibilityPage(userId, candidates, chunk, cursor, lookups)
+                        : doGetProfilePage(candidates, chunk, cursor, lookups);
+
+                    page = next.getProfiles().iterator();
+                    exhausted = next.getNextCursor() == null;
+                    cursor = exhausted ? null : DiscoveryCursor.decode(next.getNextCursor());
+                    chunk = Math.min(chunk * 2, MAX_STREAM_CHUNK);
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public ProfileCard next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    private List<ProfileCard> toProfiles(long[] rankKeys, int count) {
+        List<ProfileCard> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProfileCard profile = discoveryCatalogService.getCard(CompatibilityScorer.ordinalOf(rankKeys[i]));
+            // A profile deleted since ranking just drops out of the page
+            if (profile != null) {
+                result.add(profile);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Handles retrieving the user ids of the users blocked by the given user.
+     */
+    public List<String> doGetBlockedUsers(String userId) {
+        Map<String, AttributeValue> item = profileCache.get(userId);
+
+        if (item != null) {
             AttributeValue blockedUsersAttribute = item.get("blockedUsers");
 
             if (blockedUsersAttribute != null && blockedUsersAttribute.l() != null) {
@@ -183,17 +418,9 @@ public class ProfileService {
      * Handles retrieving the user ids and then user names of the users blocked by the given user.
      */
     public List<String> doGetBlockedUserNames(String userId) {
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .build();
+        Map<String, AttributeValue> item = profileCache.get(userId);
 
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-
-        if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
+        if (item != null) {
             AttributeValue blockedUsersAttribute = item.get("blockedUsers");
 
             if (blockedUsersAttribute != null && blockedUsersAttribute.l() != null) {
@@ -201,9 +428,10 @@ public class ProfileService {
                         .map(AttributeValue::s)
                         .collect(Collectors.toList());
 
-                // Fetch full names for each blocked user ID
+                // Fetch all the full names together, falling back to the id for users without one
+                Map<String, String> fullNames = displayNameResolver.resolve(blockedUserIds);
                 List<String> blockedUserFullNames = blockedUserIds.stream()
-                        .map(blockedUserId -> getFullNameForUserId(blockedUserId))
+                        .map(blockedUserId -> fullNames.getOrDefault(blockedUserId, "User ID: " + blockedUserId))
                         .collect(Collectors.toList());
 
                 return blockedUserFullNames;
@@ -212,26 +440,6 @@ public class ProfileService {
         return Collections.emptyList();
     }
 
-    // Helper method to fetch the full name for a given user ID
-    private String getFullNameForUserId(String userId) {
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .attributesToGet("fullName") // Fetch only the fullName attribute
-                .build();
-
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-
-        if (response.hasItem() && response.item().containsKey("fullName")) {
-            return response.item().get("fullName").s();
-        } else {
-            return "User ID: " + userId; // Or handle the case where the name is not found
-        }
-    }
-
-
     public boolean isUserBlocked(String blockerId, String blockedId) {
         try {
             List<String> blockedUsers = doGetBlockedUsers(blockerId);
@@ -246,6 +454,8 @@ public class ProfileService {
      * table
      */
     public void doAddToBlockedUsers(String blockerId, String blockedId) {
+        // The list is rewritten whole, so start from the stored one rather than a cached copy
+        profileCache.invalidate(blockerId);
         List<String> blockedUsers = new ArrayList<>(doGetBlockedUsers(blockerId));
 
         if (!blockedUsers.contains(blockedId)) {
@@ -265,8 +475,11 @@ public class ProfileService {
                 .key(key)
                 .updateExpression("SET blockedUsers = :newBlockedUsers")
                 .expressionAttributeValues(updateValues)
+                .returnValues(ReturnValue.ALL_NEW)
                 .build();
 
-        dynamoDbClient.updateItem(updateRequest);
+        UpdateItemResponse response = dynamoDbClient.updateItem(updateRequest);
+        profileCache.put(response.attributes());
+        discoveryCatalogService.setBlockedUsers(blockerId, blockedUsers);
     }
 }
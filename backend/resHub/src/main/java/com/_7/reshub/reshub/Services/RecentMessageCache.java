@@ -0,0 +1,363 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Models.MessagePage;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Keeps the newest messages of recently active chats in memory, a fixed-size ring buffer per chat
+ * holding at most chats.cache.messages.per.chat messages. Opening a chat and paging through its
+ * recent history then costs no DynamoDB reads while the chat is hot.
+ *
+ * A buffer is loaded from the newest page of the chat the first time it is read, and from then on
+ * createMessage writes through to it, overwriting the oldest message once the buffer is full. A
+ * buffer is "complete" while it holds the whole conversation (the chat had no more messages than
+ * fit when it was loaded and none have been pushed out since); only then can requests that reach
+ * past the oldest cached message be answered from it.
+ *
+ * At most chats.cache.max.chats buffers are kept, the least recently used being dropped first, and
+ * chats not read or written for chats.cache.idle.ms are dropped by a periodic sweep. Deleting a
+ * chat's messages must invalidate its buffer.
+ *
+ * A load races with messages written while its query is in flight, which would otherwise be
+ * missing from the buffer for as long as it lives. Callers take a writeStamp before querying and
+ * pass it to load, which is skipped if a message was written to the chat or its buffer invalidated
+ * (or, rarely, the same happened to another chat sharing its stripe) in the meantime.
+ *
+ * Buffers are local to this instance, so a message written through another instance is not seen
+ * here until the buffer is evicted and reloaded.
+ */
+@Service
+public class RecentMessageCache {
+
+    // Rough per-message overhead of the map, its entries and the strings' headers
+    private static final long MESSAGE_OVERHEAD_BYTES = 200;
+    private static final int WRITE_STRIPES = 256;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // chats.cache.messages.per.chat in application.properties
+    @Value("${chats.cache.messages.per.chat:50}")
+    private int capacity;
+
+    // chats.cache.max.chats in application.properties
+    @Value("${chats.cache.max.chats:10000}")
+    private int maxChats;
+
+    // chats.cache.idle.ms in application.properties
+    @Value("${chats.cache.idle.ms:600000}")
+    private long idleMillis;
+
+    // Access order, so iteration starts at the least recently used chat
+    private final LinkedHashMap<String, ChatBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong cachedMessages = new AtomicLong();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLongArray writeCounts = new AtomicLongArray(WRITE_STRIPES);
+
+    @PostConstruct
+    void registerGauges() {
+        latencyMetrics.registerGauge("chats.cache.chats", this::size);
+        latencyMetrics.registerGauge("chats.cache.messages", cachedMessages::get);
+        latencyMetrics.registerGauge("chats.cache.bytes", cachedBytes::get);
+        latencyMetrics.registerGauge("chats.cache.hitRate", this::hitRate);
+    }
+
+    /*
+     * The number of messages a buffer holds, and so the largest page that can be served from one.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /*
+     * Returns the page of at most limit messages created before the given createdAt (or the
+     * newest ones if before is null), newest first, or null if the chat is not cached or its
+     * buffer does not reach far enough back.
+     */
+    public MessagePage getPage(String chatId, int limit, String before) {
+        ChatBuffer buffer = get(chatId);
+        MessagePage page = buffer == null ? null : buffer.page(limit, before);
+        recordLookup(page != null);
+        return page;
+    }
+
+    /*
+     * Returns the whole conversation, newest first, if the chat is cached and its buffer holds
+     * every message; otherwise null.
+     */
+    public List<Map<String, String>> getAll(String chatId) {
+        ChatBuffer buffer = get(chatId);
+        List<Map<String, String>> messages = buffer == null ? null : buffer.all();
+        recordLookup(messages != null);
+        return messages;
+    }
+
+    /*
+     * Taken before querying the messages that will be passed to load.
+     */
+    public long writeStamp(String chatId) {
+        return writeCounts.get(stripe(chatId));
+    }
+
+    /*
+     * Replaces the chat's buffer with the given messages, newest first. complete says whether
+     * they are the whole conversation. Only the newest capacity messages are kept. Does nothing
+     * if a message was appended since writeStamp was taken.
+     */
+    public void load(String chatId, List<Map<String, String>> newestFirst, boolean complete, long writeStamp) {
+        ChatBuffer buffer = new ChatBuffer(capacity);
+        boolean truncated = newestFirst.size() > capacity;
+        List<Map<String, String>> kept = truncated ? newestFirst.subList(0, capacity) : newestFirst;
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            buffer.add(kept.get(i));
+        }
+        buffer.complete = complete && !truncated;
+
+        ChatBuffer replaced;
+        synchronized (buffers) {
+            // Checked under the lock so an append cannot slip in between the check and the put
+            if (writeCounts.get(stripe(chatId)) != writeStamp) {
+                buffer.release();
+                return;
+            }
+            replaced = buffers.put(chatId, buffer);
+            evictOverflow();
+        }
+        if (replaced != null) {
+            replaced.release();
+        }
+    }
+
+    /*
+     * Adds a newly written message to the chat's buffer if the chat is cached. Uncached chats
+     * are left alone; they are loaded on their next read.
+     */
+    public void append(String chatId, Map<String, String> message) {
+        ChatBuffer buffer;
+        synchronized (buffers) {
+            writeCounts.incrementAndGet(stripe(chatId));
+            buffer = buffers.get(chatId);
+        }
+        if (buffer != null) {
+            buffer.add(message);
+        }
+    }
+
+    /*
+     * Drops the chat's buffer, for when its messages are deleted.
+     */
+    public void invalidate(String chatId) {
+        ChatBuffer removed;
+        synchronized (buffers) {
+            // Also stops a load that is in flight from bringing the deleted messages back
+            writeCounts.incrementAndGet(stripe(chatId));
+            removed = buffers.remove(chatId);
+        }
+        if (removed != null) {
+            removed.release();
+        }
+    }
+
+    /*
+     * Drops the buffers of chats that have not been read or written for chats.cache.idle.ms.
+     */
+    @Scheduled(fixedDelayString = "${chats.cache.sweep.interval.ms:60000}")
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        List<ChatBuffer> evicted = new ArrayList<>();
+        synchronized (buffers) {
+            Iterator<ChatBuffer> iterator = buffers.values().iterator();
+            while (iterator.hasNext()) {
+                ChatBuffer buffer = iterator.next();
+                if (buffer.lastUsed <= idleSince) {
+                    iterator.remove();
+                    evicted.add(buffer);
+                }
+            }
+        }
+        for (ChatBuffer buffer : evicted) {
+            buffer.release();
+        }
+        for (int i = 0; i < evicted.size(); i++) {
+            latencyMetrics.increment("chats.cache.evicted");
+        }
+    }
+
+    private ChatBuffer get(String chatId) {
+        synchronized (buffers) {
+            return buffers.get(chatId);
+        }
+    }
+
+    private static int stripe(String chatId) {
+        return Math.floorMod(chatId.hashCode(), WRITE_STRIPES);
+    }
+
+    private int size() {
+        synchronized (buffers) {
+            return buffers.size();
+        }
+    }
+
+    private void recordLookup(boolean hit) {
+        (hit ? hits : misses).increment();
+        latencyMetrics.increment(hit ? "chats.cache.hit" : "chats.cache.miss");
+    }
+
+    private double hitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    // Called with the buffers lock held
+    private void evictOverflow() {
+        Iterator<ChatBuffer> iterator = buffers.values().iterator();
+        while (buffers.size() > maxChats && iterator.hasNext()) {
+            ChatBuffer buffer = iterator.next();
+            iterator.remove();
+            buffer.release();
+            latencyMetrics.increment("chats.cache.evicted");
+        }
+    }
+
+    private static long estimateBytes(Map<String, String> message) {
+        long bytes = MESSAGE_OVERHEAD_BYTES;
+        for (Map.Entry<String, String> entry : message.entrySet()) {
+            bytes += 2L * entry.getKey().length() + (entry.getValue() == null ? 0 : 2L * entry.getValue().length());
+        }
+        return bytes;
+    }
+
+    /*
+     * The newest messages of one chat, ordered by createdAt. The oldest message is at head and
+     * is overwritten when a message is added to a full buffer.
+     */
+    private final class ChatBuffer {
+        private final Map<String, String>[] slots;
+        private int head = 0;
+        private int count = 0;
+        private long bytes = 0;
+        private boolean complete = true;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private ChatBuffer(int capacity) {
+            this.slots = new Map[capacity];
+        }
+
+        private synchronized void add(Map<String, String> message) {
+            lastUsed = System.currentTimeMillis();
+            String createdAt = message.getOrDefault("createdAt", "");
+
+            // Messages almost always arrive in order; find where this one goes from the newest end
+            int position = count;
+            while (position > 0 && createdAt.compareTo(at(position - 1).getOrDefault("createdAt", "")) < 0) {
+                position--;
+            }
+            if (position > 0 && createdAt.equals(at(position - 1).getOrDefault("createdAt", ""))) {
+                // Same sort key, so the write replaced that message in the table too
+                account(0, estimateBytes(message) - estimateBytes(at(position - 1)));
+                slots[index(position - 1)] = message;
+                return;
+            }
+
+            if (count == slots.length) {
+                if (position == 0) {
+                    // Older than everything we hold, so it only tells us the buffer is not complete
+                    complete = false;
+                    return;
+                }
+                // Overwrite the oldest message; everything before the insert point moves down one
+                Map<String, String> dropped = slots[head];
+                head = (head + 1) % slots.length;
+                count--;
+                position--;
+                account(-1, -estimateBytes(dropped));
+                complete = false;
+            }
+
+            for (int i = count; i > position; i--) {
+                slots[index(i)] = at(i - 1);
+            }
+            slots[index(position)] = message;
+            count++;
+            account(1, estimateBytes(message));
+        }
+
+        private synchronized MessagePage page(int limit, String before) {
+            lastUsed = System.currentTimeMillis();
+
+            // Walk from the newest message down to the first one older than the cursor
+            int newest = count - 1;
+            while (newest >= 0 && before != null && at(newest).getOrDefault("createdAt", "").compareTo(before) >= 0) {
+                newest--;
+            }
+            int available = newest + 1;
+
+            // One extra message tells us whether there is an older page, as with the Query
+            boolean hasMore = available > limit;
+            if (!hasMore && !complete) {
+                return null;
+            }
+
+            List<Map<String, String>> messages = new ArrayList<>(Math.min(limit, available));
+            for (int i = newest; i >= 0 && messages.size() < limit; i--) {
+                messages.add(at(i));
+            }
+            String nextCursor = hasMore ? messages.get(messages.size() - 1).get("createdAt") : null;
+            return new MessagePage(messages, nextCursor);
+        }
+
+        private synchronized List<Map<String, String>> all() {
+            lastUsed = System.currentTimeMillis();
+            if (!complete) {
+                return null;
+            }
+            List<Map<String, String>> messages = new ArrayList<>(count);
+            for (int i = count - 1; i >= 0; i--) {
+                messages.add(at(i));
+            }
+            return messages;
+        }
+
+        private synchronized void release() {
+            account(-count, -bytes);
+            count = 0;
+            head = 0;
+            complete = false;
+        }
+
+        private Map<String, String> at(int i) {
+            return slots[index(i)];
+        }
+
+        private int index(int i) {
+            return (head + i) % slots.length;
+        }
+
+        private void account(int messages, long byteDelta) {
+            bytes += byteDelta;
+            cachedMessages.addAndGet(messages);
+            cachedBytes.addAndGet(byteDelta);
+        }
+    }
+}
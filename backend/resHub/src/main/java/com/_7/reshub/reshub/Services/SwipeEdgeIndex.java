@@ -0,0 +1,231 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Utils.DynamoPages;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * In-memory index of right swipes, so "did A swipe right on B" is a hash lookup instead of a
+ * Query over every right swipe A has made.
+ *
+ * A swiper's right swipes are loaded from the swipe log the first time they are asked about,
+ * keyed by the swiped on user's UserIdInterner id and mapped to the swipe's expirationTimestamp so
+ * edges age out with the swipe log's TTL. doCreateSwipe and doRollbackSwipe keep them current.
+ * Expired edges are dropped when they are read and by the periodic sweep, and swipers not asked
+ * about for swipes.edges.idle.ms are dropped entirely and reloaded on their next check.
+ *
+ * Swipes written through another instance are not recorded here, so a negative answer may be
+ * checked against the swipe log: a Query of only the swipes made since the swiper was last synced
+ * (the swipe log's sort key is the swipe time), which is a page of a few items. That recheck runs
+ * at most once per swipes.edges.recheck.ms per swiper, and not right after a load, so most
+ * negative answers are a hash lookup too; a swipe made through another instance can go unseen for
+ * up to that long. A positive answer never needs the table.
+ *
+ * Lookups only intern ids that are in the swipe log, so checking arbitrary ids does not grow the
+ * interner.
+ */
+@Service
+public class SwipeEdgeIndex {
+
+    // Covers clock differences between instances writing the same swiper's swipes
+    private static final long SYNC_OVERLAP_SECONDS = 5;
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // swipes.edges.idle.ms in application.properties
+    @Value("${swipes.edges.idle.ms:600000}")
+    private long idleMillis;
+
+    // swipes.edges.recheck.ms in application.properties
+    @Value("${swipes.edges.recheck.ms:5000}")
+    private long recheckMillis;
+
+    private final UserIdInterner userIds = new UserIdInterner();
+    private final Map<String, SwiperEdges> swipers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerGauges() {
+        latencyMetrics.registerGauge("swipes.edges.swipers", swipers::size);
+    }
+
+    /*
+     * Returns true if the swiper has an unexpired right swipe on the other user.
+     */
+    public boolean hasSwipedRight(String swiperId, String swipedOnUserId) {
+        SwiperEdges edges = loaded(swiperId);
+        edges.lastRead = System.currentTimeMillis();
+        if (edges.contains(userIds.get(swipedOnUserId))) {
+            return true;
+        }
+
+        // The swipe may have been written through another instance since the last sync, unless
+        // that sync (or the load) was too recent to be worth repeating
+        if (System.currentTimeMillis() - edges.syncedAt < recheckMillis) {
+            return false;
+        }
+        latencyMetrics.increment("swipes.edges.recheck");
+        sync(swiperId, edges, edges.syncedThrough - SYNC_OVERLAP_SECONDS);
+        return edges.contains(userIds.get(swipedOnUserId));
+    }
+
+    /*
+     * Records a right swipe that was just written to the swipe log. Swipers that are not loaded
+     * are left alone; their swipes are read from the log when they are first asked about.
+     */
+    public void recordRightSwipe(String swiperId, String swipedOnUserId, long expirationTimestamp) {
+        SwiperEdges edges = swipers.get(swiperId);
+        if (edges != null) {
+            edges.add(userIds.intern(swipedOnUserId), expirationTimestamp);
+        }
+    }
+
+    /*
+     * Forgets a right swipe that was deleted from the swipe log.
+     */
+    public void removeRightSwipe(String swiperId, String swipedOnUserId) {
+        SwiperEdges edges = swipers.get(swiperId);
+        int swipedOn = userIds.get(swipedOnUserId);
+        if (edges != null && swipedOn != UserIdInterner.NOT_FOUND) {
+            edges.targets.remove(swipedOn);
+        }
+    }
+
+    /*
+     * Drops swipers not checked for swipes.edges.idle.ms and the expired edges of the rest.
+     */
+    @Scheduled(fixedDelayString = "${swipes.edges.sweep.interval.ms:60000}")
+    public void evictIdle() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+        long now = Instant.now().getEpochSecond();
+        swipers.forEach((swiperId, edges) -> {
+            if (edges.lastRead <= idleSince) {
+                swipers.remove(swiperId, edges);
+            } else {
+                edges.targets.values().removeIf(expiration -> expiration <= now);
+            }
+        });
+    }
+
+    /*
+     * Returns the swiper's edges, loading them from the swipe log if needed. Concurrent callers
+     * for the same swiper wait for the first load instead of repeating it; the Query runs outside
+     * the map so it does not hold up other swipers.
+     */
+    private SwiperEdges loaded(String swiperId) {
+        SwiperEdges edges = swipers.get(swiperId);
+        if (edges == null) {
+            SwiperEdges fresh = new SwiperEdges();
+            edges = swipers.putIfAbsent(swiperId, fresh);
+            if (edges == null) {
+                try {
+                    sync(swiperId, fresh, 0);
+                    fresh.loaded.complete(null);
+                    return fresh;
+                } catch (RuntimeException e) {
+                    swipers.remove(swiperId, fresh);
+                    fresh.loaded.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        try {
+            edges.loaded.join();
+        } catch (CompletionException e) {
+            // Surface the DynamoDB exception the way a direct call would
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return edges;
+    }
+
+    /*
+     * Reads the swiper's right swipes made at or after the given swipe time into edges.
+     */
+    private void sync(String swiperId, SwiperEdges edges, long since) {
+        long start = Instant.now().getEpochSecond();
+        // Set up front so concurrent negative checks do not all run the same recheck
+        edges.syncedAt = System.currentTimeMillis();
+        QueryRequest queryRequest = QueryRequest.builder()
+            .tableName(dynamoDbConfig.getSwipeLogTableName())
+            .keyConditionExpression("userId = :userId AND #ts >= :since")
+            .filterExpression("direction = :direction")
+            .projectionExpression("swipedOnUserId, expirationTimestamp")
+            .expressionAttributeNames(Map.of(
+                    "#ts", "timestamp" // timestamp is a 'reserved keyword' so it has to be aliased
+            ))
+            .expressionAttributeValues(Map.of(
+                    ":userId", AttributeValue.builder().s(swiperId).build(),
+                    ":since", AttributeValue.builder().n(Long.toString(Math.max(0, since))).build(),
+                    ":direction", AttributeValue.builder().s("r").build()
+            ))
+            .build();
+
+        DynamoPages.query(dynamoDbClient, queryRequest).forEach(item -> {
+            AttributeValue expiration = item.get("expirationTimestamp");
+            long expirationTimestamp = expiration != null && expiration.n() != null
+                    ? Long.parseLong(expiration.n())
+                    : Long.MAX_VALUE;
+
+            edges.add(userIds.intern(item.get("swipedOnUserId").s()), expirationTimestamp);
+        });
+        edges.syncedThrough = Math.max(edges.syncedThrough, start);
+    }
+
+    /*
+     * One swiper's right swipes: swiped on user id -> expirationTimestamp.
+     */
+    private static final class SwiperEdges {
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+        private final Map<Integer, Long> targets = new ConcurrentHashMap<>();
+        // Swipe time (epoch second) up to which targets holds every swipe in the log
+        private volatile long syncedThrough = 0;
+        // When the last sync started (epoch millis)
+        private volatile long syncedAt = 0;
+        private volatile long lastRead = System.currentTimeMillis();
+
+        private void add(int swipedOn, long expirationTimestamp) {
+            targets.merge(swipedOn, expirationTimestamp, Math::max);
+        }
+
+        private boolean contains(int swipedOn) {
+            if (swipedOn == UserIdInterner.NOT_FOUND) {
+                return false;
+            }
+            Long expiration = targets.get(swipedOn);
+            if (expiration == null) {
+                return false;
+            }
+            if (expiration <= Instant.now().getEpochSecond()) {
+                targets.remove(swipedOn, expiration);
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/*
+ * Write-behind pipeline for swipe log items that nothing has to read back right away (left
+ * swipes). Items go into a bounded queue and a single background thread writes them with
+ * BatchWriteItem, 25 at a time, as soon as a batch is full or the oldest queued item has waited
+ * swipes.writebehind.flush.ms.
+ *
+ * - Unprocessed items returned by BatchWriteItem are retried with exponential backoff, then
+ *   written one by one with PutItem.
+ * - When the queue is full, enqueue waits briefly and then writes the item synchronously on the
+ *   caller's thread, so a burst slows swipers down instead of dropping swipes.
+ * - On shutdown the queue is drained before the application stops.
+ * - Queued swipes are visible through getPendingSwipedOn until they are written, so "already
+ *   swiped on" checks see them immediately.
+ */
+@Service
+public class SwipeLogWriter {
+
+    private static final Logger logger = Logger.getLogger(SwipeLogWriter.class.getName());
+
+    // BatchWriteItem accepts at most 25 items per call
+    private static final int MAX_BATCH_SIZE = 25;
+    private static final int MAX_BATCH_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 50;
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // swipes.writebehind.queue.capacity in application.properties
+    @Value("${swipes.writebehind.queue.capacity:10000}")
+    private int queueCapacity;
+
+    // swipes.writebehind.flush.ms in application.properties
+    @Value("${swipes.writebehind.flush.ms:200}")
+    private long flushMillis;
+
+    // swipes.writebehind.offer.timeout.ms in application.properties
+    @Value("${swipes.writebehind.offer.timeout.ms:50}")
+    private long offerTimeoutMillis;
+
+    private BlockingQueue<Map<String, AttributeValue>> queue;
+    private final Map<String, Set<String>> pendingSwipedOn = new ConcurrentHashMap<>();
+
+    private Thread flusher;
+    private volatile boolean running = false;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+
+        flusher = new Thread(this::runFlusher, "swipe-log-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /*
+     * Queues a swipe log item for writing. Falls back to a synchronous PutItem if the queue stays
+     * full for swipes.writebehind.offer.timeout.ms or the writer is shutting down.
+     */
+    public void enqueue(Map<String, AttributeValue> item) {
+        String userId = item.get("userId").s();
+        String swipedOnUserId = item.get("swipedOnUserId").s();
+        pendingSwipedOn.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(swipedOnUserId);
+
+        boolean queued = false;
+        if (running) {
+            try {
+                queued = queue.offer(item, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (!queued) {
+            latencyMetrics.increment("swipes.writebehind.syncFallback");
+            try {
+                putNow(item);
+            } finally {
+                clearPending(item);
+            }
+        }
+    }
+
+    /*
+     * Returns the users the given user swiped on whose swipe log items are still queued.
+     */
+    public Set<String> getPendingSwipedOn(String userId) {
+        Set<String> pending = pendingSwipedOn.get(userId);
+        return pending == null ? Collections.emptySet() : pending;
+    }
+
+    /*
+     * Stops the background thread and writes whatever is still queued. The flusher is not
+     * interrupted: an interrupt would abort the BatchWriteItem it may be in the middle of, and
+     * every retry and PutItem after it, losing swipes that were already acknowledged. It sees
+     * running turn false within swipes.writebehind.flush.ms and finishes its current batch first.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        boolean interrupted = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+
+        // Clear the interrupt flag for the drain, for the same reason, and restore it afterwards
+        interrupted |= Thread.interrupted();
+        try {
+            List<Map<String, AttributeValue>> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            for (int i = 0; i < remaining.size(); i += MAX_BATCH_SIZE) {
+                writeBatch(remaining.subList(i, Math.min(remaining.size(), i + MAX_BATCH_SIZE)));
+            }
+            logger.info("Swipe log writer drained " + remaining.size() + " queued swipes on shutdown");
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runFlusher() {
+        List<Map<String, AttributeValue>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (running) {
+            try {
+                // Wait for the first item, then give the batch up to flushMillis to fill up
+                Map<String, AttributeValue> first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= MAX_BATCH_SIZE || remaining <= 0) {
+                        break;
+                    }
+
+                    Map<String, AttributeValue> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not how shutdown stops this thread; throwing cleared the flag, so the batch
+                // gathered so far is still written below
+                logger.warning("Swipe log writer interrupted; writing its current batch");
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Map<String, AttributeValue>> items) {
+        long start = System.nanoTime();
+
+        // The swipe log is keyed on (userId, timestamp), and a batch cannot hold the same key
+        // twice; the later swipe wins, as it would with two PutItems
+        Map<String, Map<String, AttributeValue>> byKey = new LinkedHashMap<>();
+        for (Map<String, AttributeValue> item : items) {
+            byKey.put(item.get("userId").s() + "|" + item.get("timestamp").n(), item);
+        }
+
+        List<WriteRequest> requests = new ArrayList<>(byKey.size());
+        for (Map<String, AttributeValue> item : byKey.values()) {
+            requests.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+        }
+
+        String tableName = dynamoDbConfig.getSwipeLogTableName();
+        Map<String, List<WriteRequest>> unprocessed = Map.of(tableName, requests);
+
+        for (int attempt = 0; attempt < MAX_BATCH_ATTEMPTS && !unprocessed.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                latencyMetrics.increment("swipes.writebehind.retry");
+                sleep(BASE_BACKOFF_MS << (attempt - 1));
+            }
+
+            try {
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(unprocessed)
+                        .build());
+                unprocessed = response.hasUnprocessedItems() ? response.unprocessedItems() : Map.of();
+            } catch (Exception e) {
+                logger.warning("BatchWriteItem for swipe log failed: " + e.getMessage());
+            }
+        }
+
+        // Whatever is still unprocessed is written one by one so no swipe is lost
+        for (WriteRequest request : unprocessed.getOrDefault(tableName, List.of())) {
+            latencyMetrics.increment("swipes.writebehind.syncFallback");
+            try {
+                putNow(request.putRequest().item());
+            } catch (Exception e) {
+                logger.severe("Dropping swipe log item after retries: " + e.getMessage());
+                latencyMetrics.increment("swipes.writebehind.dropped");
+            }
+        }
+
+        for (Map<String, AttributeValue> item : items) {
+            clearPending(item);
+        }
+        latencyMetrics.recordSince("swipes.writebehind.batch", start);
+    }
+
+    private void putNow(Map<String, AttributeValue> item) {
+        dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(dynamoDbConfig.getSwipeLogTableName())
+                .item(item)
+                .build());
+    }
+
+    private void clearPending(Map<String, AttributeValue> item) {
+        String userId = item.get("userId").s();
+        pendingSwipedOn.computeIfPresent(userId, (id, pending) -> {
+            pending.remove(item.get("swipedOnUserId").s());
+            return pending.isEmpty() ? null : pending;
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,22 +1,25 @@
 package com._7.reshub.reshub.Services;
 
 import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Utils.DynamoPages;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
-import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class SwipeService {
@@ -27,10 +30,22 @@ public class SwipeService {
     @Autowired
     private DynamoDbClient dynamoDbClient;
 
+    @Autowired
+    private SwipeEdgeIndex swipeEdgeIndex;
+
+    @Autowired
+    private SwipeLogWriter swipeLogWriter;
+
+    @Autowired
+    @Qualifier("dynamoPrefetchExecutor")
+    private ExecutorService dynamoPrefetchExecutor;
+
     long timeStart = 0;
 
     /*
-     * Handles adding the new document to the swipe log table.
+     * Handles adding the new document to the swipe log table. Left swipes go through the
+     * write-behind SwipeLogWriter; right swipes are written right away because the mutual-swipe
+     * check that follows them has to see them.
      */
     public void doCreateSwipe(String userId, String swipedOnUserId, String direction, long timestamp, long expirationTimestamp) {
         Map<String, AttributeValue> item = Map.of(
@@ -41,12 +56,18 @@ public class SwipeService {
                 "expirationTimestamp", AttributeValue.builder().n(Long.toString(expirationTimestamp)).build()
         );
 
+        if (!direction.equals("r")) {
+            swipeLogWriter.enqueue(item);
+            return;
+        }
+
         PutItemRequest request = PutItemRequest.builder()
                 .tableName(dynamoDbConfig.getSwipeLogTableName())
                 .item(item)
                 .build();
 
         dynamoDbClient.putItem(request);
+        swipeEdgeIndex.recordRightSwipe(userId, swipedOnUserId, expirationTimestamp);
     }
 
     /*
@@ -65,42 +86,28 @@ public class SwipeService {
                     ":userId", AttributeValue.builder().s(userId).build(),
                     ":timeStart", AttributeValue.builder().n(Long.toString(timeStart)).build()
             ))
+            .projectionExpression("swipedOnUserId")
             .build();
 
-    
-                QueryResponse response = dynamoDbClient.query(queryRequest);
-    
-                if (response.hasItems()) {
-                    return response.items().stream()
-                            .map(item -> item.get("swipedOnUserId").s())
-                            .collect(Collectors.toList());
-                }
+        // Left swipes still queued in the SwipeLogWriter are not in the table yet
+        Set<String> pending = swipeLogWriter.getPendingSwipedOn(userId);
 
-                return Collections.emptyList();
+        List<String> swipedOn = DynamoPages.query(dynamoDbClient, queryRequest)
+                .map(item -> item.get("swipedOnUserId").s())
+                .collect(Collectors.toList());
+        swipedOn.addAll(pending);
+        return swipedOn;
     }
 
     /*
-     * Returns true if the first user swiped right on the second, false otherwise
+     * Returns true if the first user swiped right on the second, false otherwise.
+     * Answered from the in-memory SwipeEdgeIndex. The first user's right swipes are read from
+     * the swipe log once, on the first check about them; after that a check is a hash lookup
+     * whatever their history size, and a negative answer re-reads only their latest swipes, at
+     * most once per swipes.edges.recheck.ms.
      */
     public boolean doCheckRightSwipe(String userId, String swipedOnUserId) {
-        QueryRequest queryRequest = QueryRequest.builder()
-            .tableName(dynamoDbConfig.getSwipeLogTableName())
-            .keyConditionExpression("userId = :userId AND #ts > :timeStart")
-            .filterExpression("direction = :direction")
-            .expressionAttributeNames(Map.of(
-                    "#ts", "timestamp" // timestamp is a 'reserved keyword' so it has to be aliased
-            ))
-            .expressionAttributeValues(Map.of(
-                    ":userId", AttributeValue.builder().s(userId).build(),
-                    ":timeStart", AttributeValue.builder().n(Long.toString(timeStart)).build(),
-                    ":direction", AttributeValue.builder().s("r").build()
-            ))
-            .build();
-
-        QueryResponse response = dynamoDbClient.query(queryRequest);
-
-        return response.hasItems() && response.items().stream()
-            .anyMatch(item -> item.get("swipedOnUserId").s().equals(swipedOnUserId));
+        return swipeEdgeIndex.hasSwipedRight(userId, swipedOnUserId);
     }
 
     /*
@@ -118,16 +125,9 @@ public class SwipeService {
             ))
             .build();
 
-        QueryResponse response = dynamoDbClient.query(queryRequest);
-
-        List<String> usersWhoSwipedRight = new ArrayList<>();
-        if (response.hasItems()) {
-            usersWhoSwipedRight = response.items().stream()
-                .map(item -> item.get("userId").s())
-                .collect(Collectors.toList());
-        }
-
-        return usersWhoSwipedRight;
+        return DynamoPages.query(dynamoDbClient, queryRequest)
+            .map(item -> item.get("userId").s())
+            .collect(Collectors.toList());
     }
 
 
@@ -145,13 +145,17 @@ public class SwipeService {
                         ":direction", AttributeValue.builder().s(direction).build()
                 ))
                 .scanIndexForward(false) // Sorts in descending order by timestamp (most recent first)
-                .limit(1)
                 .build();
-    
-        QueryResponse response = dynamoDbClient.query(queryRequest);
-    
-        if (response.hasItems()) {
-            Map<String, AttributeValue> mostRecentSwipe = response.items().get(0);
+
+        // No Limit here: DynamoDB applies it before the filter, so Limit 1 only ever looked at the
+        // user's newest swipe. findFirst stops paging at the first match instead.
+        Optional<Map<String, AttributeValue>> match;
+        try (Stream<Map<String, AttributeValue>> swipes = DynamoPages.query(dynamoDbClient, queryRequest)) {
+            match = swipes.findFirst();
+        }
+
+        if (match.isPresent()) {
+            Map<String, AttributeValue> mostRecentSwipe = match.get();
     
            String swipeId = mostRecentSwipe.get("userId").s();
     
@@ -166,6 +170,10 @@ public class SwipeService {
                     .build();
     
             dynamoDbClient.deleteItem(deleteRequest);
+
+            if (direction.equals("r")) {
+                swipeEdgeIndex.removeRightSwipe(userId, swipedOnUserId);
+            }
         } else {
             System.out.println("No matching swipe found for the given parameters.");
         }
@@ -186,10 +194,8 @@ public void deleteUserSwipes(String userId) {
             .expressionAttributeValues(Map.of(":userId", AttributeValue.builder().s(userId).build()))
             .build();
         
-        QueryResponse swipesByResponse = dynamoDbClient.query(querySwipesBy);
-        
         // Delete each swipe made by the user
-        for (Map<String, AttributeValue> item : swipesByResponse.items()) {
+        DynamoPages.query(dynamoDbClient, querySwipesBy, dynamoPrefetchExecutor).forEach(item -> {
             Map<String, AttributeValue> key = new HashMap<>();
             key.put("userId", item.get("userId"));
             key.put("swipedOnUserId", item.get("swipedOnUserId"));
@@ -200,7 +206,7 @@ public void deleteUserSwipes(String userId) {
                 .build();
             
             dynamoDbClient.deleteItem(deleteRequest);
-        }
+        });
         
         // Query swipes where userId is the user being swiped on
         // Note: You may need a GSI for this query to be efficient
@@ -212,10 +218,8 @@ public void deleteUserSwipes(String userId) {
             .expressionAttributeValues(Map.of(":userId", AttributeValue.builder().s(userId).build()))
             .build();
         
-        QueryResponse swipesOnResponse = dynamoDbClient.query(querySwipesOn);
-        
         // Delete each swipe made on the user
-        for (Map<String, AttributeValue> item : swipesOnResponse.items()) {
+        DynamoPages.query(dynamoDbClient, querySwipesOn, dynamoPrefetchExecutor).forEach(item -> {
             Map<String, AttributeValue> key = new HashMap<>();
             key.put("userId", item.get("userId"));
             key.put("swipedOnUserId", item.get("swipedOnUserId"));
@@ -226,7 +230,7 @@ public void deleteUserSwipes(String userId) {
                 .build();
             
             dynamoDbClient.deleteItem(deleteRequest);
-        }
+        });
     } catch (Exception e) {
         throw new RuntimeException("Failed to delete user swipe logs: " + e.getMessage(), e);
     }
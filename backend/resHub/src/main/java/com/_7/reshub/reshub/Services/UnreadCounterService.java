@@ -0,0 +1,335 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Utils.DynamoPages;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/*
+ * Per-participant read state stored on the chat item:
+ *
+ * - lastReadAt_<userId>: the read watermark, the createdAt of the chat's newest message at the
+ *   time the user last opened it. A message is unread for a user if someone else sent it after
+ *   their watermark.
+ * - unread_<userId>: the number of such messages, so an unread badge is one attribute read
+ *   instead of a count over the conversation.
+ *
+ * createMessage's chat update increments the recipient's counter (ADD) in the same UpdateItem
+ * that sets the chat's last message and updatedAt, unless the chat already has that message (a
+ * retry) or the recipient's watermark is already past it (they read it before the update landed).
+ * markRead moves the reader's watermark up to the newest stored message and zeroes their counter
+ * in one conditional UpdateItem, however many messages were pending, so the two attributes always
+ * change together. Chats created before the counters existed get theirs backfilled the first
+ * time they are read; chats that were never marked read since the watermark existed fall back to
+ * the messages' old isUnread flags.
+ *
+ * Counters can still drift (a message write that succeeds while the chat update fails, client
+ * timestamps that arrive out of order), so chats that receive messages are remembered and
+ * recounted in the background once they have been quiet for chats.unread.reconcile.quiet.ms. A
+ * recount only replaces the counter if neither it nor the watermark changed while the messages
+ * were being counted.
+ */
+@Service
+public class UnreadCounterService {
+
+    private static final Logger logger = Logger.getLogger(UnreadCounterService.class.getName());
+
+    @Autowired
+    private DynamoDbConfig dynamoDbConfig;
+
+    @Autowired
+    private DynamoDbClient dynamoDbClient;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    // chats.unread.reconcile.quiet.ms in application.properties
+    @Value("${chats.unread.reconcile.quiet.ms:60000}")
+    private long quietMillis;
+
+    // chats.unread.reconcile.batch in application.properties
+    @Value("${chats.unread.reconcile.batch:50}")
+    private int reconcileBatch;
+
+    // chatId -> last time a message was created in it
+    private final Map<String, Long> dirtyChats = new ConcurrentHashMap<>();
+
+    /*
+     * Name of the chat attribute holding the number of messages the given user has not read.
+     */
+    public static String attributeName(String userId) {
+        return "unread_" + userId;
+    }
+
+    /*
+     * Name of the chat attribute holding the user's read watermark.
+     */
+    public static String lastReadAttribute(String userId) {
+        return "lastReadAt_" + userId;
+    }
+
+    /*
+     * Returns the user's unread count for the chat, backfilling the counter if the chat does
+     * not have one yet.
+     */
+    public int getUnreadCount(String chatId, String userId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(dynamoDbConfig.getChatsTableName())
+                .key(chatKey(chatId))
+                .projectionExpression("#u, #lr")
+                .expressionAttributeNames(Map.of("#u", attributeName(userId), "#lr", lastReadAttribute(userId)))
+                .build());
+
+        if (!response.hasItem()) {
+            return 0;
+        }
+
+        Integer counter = counterValue(response.item(), userId);
+        if (counter != null) {
+            return counter;
+        }
+        return backfill(chatId, userId, watermark(response.item(), userId));
+    }
+
+    /*
+     * Counts the user's unread messages and stores the count as the chat's counter, unless a
+     * counter appeared in the meantime. lastReadAt is the user's watermark on the chat, or null.
+     */
+    public int backfill(String chatId, String userId, String lastReadAt) {
+        int count = countUnreadMessages(chatId, userId, lastReadAt);
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(dynamoDbConfig.getChatsTableName())
+                    .key(chatKey(chatId))
+                    .updateExpression("SET #u = :count")
+                    .conditionExpression("attribute_exists(chatId) AND attribute_not_exists(#u)")
+                    .expressionAttributeNames(Map.of("#u", attributeName(userId)))
+                    .expressionAttributeValues(Map.of(":count", number(count)))
+                    .build());
+            latencyMetrics.increment("chats.unread.backfill");
+        } catch (ConditionalCheckFailedException e) {
+            // The chat is gone or a counter was created concurrently; either way nothing to do
+        }
+        return count;
+    }
+
+    /*
+     * Marks everything in the chat as read by the user: moves their watermark up to the createdAt
+     * of the chat's newest stored message and zeroes their counter. The newest message is read
+     * from the messages table rather than the chat's updatedAt, which is set asynchronously after
+     * the message is stored and may not have landed yet. A single conditional write that only
+     * ever moves the watermark forward and does nothing if it is already current (or the chat
+     * was deleted).
+     */
+    public void markRead(String chatId, String userId) {
+        String newest = newestMessageCreatedAt(chatId);
+        if (newest == null) {
+            return;
+        }
+
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(dynamoDbConfig.getChatsTableName())
+                    .key(chatKey(chatId))
+                    .updateExpression("SET #lr = :newest, #u = :zero")
+                    .conditionExpression("attribute_exists(chatId) AND "
+                            + "(attribute_not_exists(#lr) OR #lr < :newest OR (#lr = :newest AND #u <> :zero))")
+                    .expressionAttributeNames(Map.of("#lr", lastReadAttribute(userId), "#u", attributeName(userId)))
+                    .expressionAttributeValues(Map.of(
+                            ":newest", AttributeValue.builder().s(newest).build(),
+                            ":zero", number(0)))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            // Already read up to the newest message, or the chat is gone
+        }
+    }
+
+    /*
+     * Remembers that the chat's counters changed so the reconciler checks them later.
+     */
+    public void markDirty(String chatId) {
+        dirtyChats.put(chatId, System.currentTimeMillis());
+    }
+
+    /*
+     * Recounts the counters of chats that have been quiet for chats.unread.reconcile.quiet.ms,
+     * at most chats.unread.reconcile.batch chats per run.
+     */
+    @Scheduled(fixedDelayString = "${chats.unread.reconcile.interval.ms:60000}")
+    public void reconcile() {
+        long quietSince = System.currentTimeMillis() - quietMillis;
+
+        List<String> due = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : dirtyChats.entrySet()) {
+            if (entry.getValue() <= quietSince) {
+                due.add(entry.getKey());
+                if (due.size() >= reconcileBatch) {
+                    break;
+                }
+            }
+        }
+
+        for (String chatId : due) {
+            long touchedAt = dirtyChats.getOrDefault(chatId, 0L);
+            try {
+                if (reconcileChat(chatId)) {
+                    // Only forget the chat if nothing touched it while it was being recounted
+                    dirtyChats.remove(chatId, touchedAt);
+                }
+            } catch (Exception e) {
+                logger.warning("Failed to reconcile unread counters for chat " + chatId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Recounts every participant's counter. Returns false if a counter changed during the
+     * recount, in which case the chat stays dirty and is tried again later.
+     */
+    private boolean reconcileChat(String chatId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(dynamoDbConfig.getChatsTableName())
+                .key(chatKey(chatId))
+                .build());
+        if (!response.hasItem()) {
+            return true;
+        }
+
+        Map<String, AttributeValue> chat = response.item();
+        AttributeValue participants = chat.get("participants");
+        if (participants == null || !participants.hasL()) {
+            return true;
+        }
+
+        boolean settled = true;
+        for (AttributeValue participant : participants.l()) {
+            String userId = participant.s();
+            Integer seen = counterValue(chat, userId);
+            String lastReadAt = watermark(chat, userId);
+            int actual = countUnreadMessages(chatId, userId, lastReadAt);
+            if (seen != null && seen == actual) {
+                continue;
+            }
+
+            // Only replace the counter if neither it nor the watermark moved during the count
+            Map<String, AttributeValue> values = new HashMap<>();
+            values.put(":count", number(actual));
+            String condition;
+            if (seen == null) {
+                condition = "attribute_exists(chatId) AND attribute_not_exists(#u)";
+            } else {
+                condition = "#u = :seen";
+                values.put(":seen", number(seen));
+            }
+            if (lastReadAt == null) {
+                condition += " AND attribute_not_exists(#lr)";
+            } else {
+                condition += " AND #lr = :lastReadAt";
+                values.put(":lastReadAt", AttributeValue.builder().s(lastReadAt).build());
+            }
+
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(dynamoDbConfig.getChatsTableName())
+                        .key(chatKey(chatId))
+                        .updateExpression("SET #u = :count")
+                        .conditionExpression(condition)
+                        .expressionAttributeNames(Map.of("#u", attributeName(userId), "#lr", lastReadAttribute(userId)))
+                        .expressionAttributeValues(values)
+                        .build());
+                latencyMetrics.increment("chats.unread.repaired");
+            } catch (ConditionalCheckFailedException e) {
+                settled = false;
+            }
+        }
+        return settled;
+    }
+
+    /*
+     * Counts the messages in the chat that other participants sent after the user's watermark,
+     * a COUNT query over just the unread range of the sort key. Without a watermark (the user
+     * has not opened the chat since watermarks were introduced) the messages' isUnread flags
+     * are used instead, which covers the whole conversation. Only used for backfill and
+     * reconciling.
+     */
+    private int countUnreadMessages(String chatId, String userId, String lastReadAt) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":chatId", AttributeValue.builder().s(chatId).build());
+        values.put(":userId", AttributeValue.builder().s(userId).build());
+
+        QueryRequest.Builder queryRequest = QueryRequest.builder()
+                .tableName(dynamoDbConfig.getMessagesTableName());
+        if (lastReadAt != null) {
+            values.put(":lastReadAt", AttributeValue.builder().s(lastReadAt).build());
+            queryRequest.keyConditionExpression("chatId = :chatId AND createdAt > :lastReadAt")
+                    .filterExpression("userId <> :userId");
+        } else {
+            values.put(":true", AttributeValue.builder().bool(true).build());
+            queryRequest.keyConditionExpression("chatId = :chatId")
+                    .filterExpression("userId <> :userId AND isUnread = :true");
+        }
+
+        return (int) DynamoPages.count(dynamoDbClient, queryRequest.expressionAttributeValues(values).build());
+    }
+
+    /*
+     * Returns the createdAt of the newest message in the chat, or null if it has none: a one item
+     * Query in descending sort key order, read consistently so a message stored just before the
+     * chat was opened is included.
+     */
+    private String newestMessageCreatedAt(String chatId) {
+        QueryResponse response = dynamoDbClient.query(QueryRequest.builder()
+                .tableName(dynamoDbConfig.getMessagesTableName())
+                .keyConditionExpression("chatId = :chatId")
+                .expressionAttributeValues(Map.of(":chatId", AttributeValue.builder().s(chatId).build()))
+                .projectionExpression("createdAt")
+                .scanIndexForward(false)
+                .limit(1)
+                .consistentRead(true)
+                .build());
+        if (!response.hasItems() || response.items().isEmpty()) {
+            return null;
+        }
+        return response.items().get(0).get("createdAt").s();
+    }
+
+    private static String watermark(Map<String, AttributeValue> chat, String userId) {
+        AttributeValue lastReadAt = chat.get(lastReadAttribute(userId));
+        return lastReadAt == null ? null : lastReadAt.s();
+    }
+
+    private static Integer counterValue(Map<String, AttributeValue> chat, String userId) {
+        AttributeValue counter = chat.get(attributeName(userId));
+        if (counter == null || counter.n() == null) {
+            return null;
+        }
+        return Math.max(0, Integer.parseInt(counter.n()));
+    }
+
+    private static Map<String, AttributeValue> chatKey(String chatId) {
+        return Map.of("chatId", AttributeValue.builder().s(chatId).build());
+    }
+
+    private static AttributeValue number(int value) {
+        return AttributeValue.builder().n(Integer.toString(value)).build();
+    }
+}
@@ -0,0 +1,79 @@
+package com._7.reshub.reshub.Services;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Dictionary from user id strings to dense int ids (0, 1, 2, ...). Sets of users such as blocked,
+ * swiped-on or liked-by can then be kept as BitSets, so a membership check is a single bit test
+ * instead of a string comparison against every element of a list.
+ *
+ * Ids are assigned on first sight and never reused. Lookups are lock-free; assigning a new id
+ * takes the instance lock.
+ */
+public class UserIdInterner {
+
+    public static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] userIds = new String[16];
+    private int size = 0;
+
+    /*
+     * Returns the int id of the user, assigning the next free one if the user is new.
+     */
+    public int intern(String userId) {
+        Integer id = ids.get(userId);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(userId);
+            if (id != null) {
+                return id;
+            }
+
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size * 2);
+            }
+            userIds[size] = userId;
+            ids.put(userId, size);
+            return size++;
+        }
+    }
+
+    /*
+     * Returns the int id of the user, or NOT_FOUND if the user was never interned.
+     */
+    public int get(String userId) {
+        Integer id = ids.get(userId);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    /*
+     * Returns the user id string for an int id, or null if the id was never assigned.
+     */
+    public String getUserId(int id) {
+        String[] current = userIds;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /*
+     * Returns the ids of the given users as a BitSet. Users that were never interned are skipped,
+     * since nothing indexed by id can refer to them.
+     */
+    public BitSet toBitSet(Collection<String> users) {
+        BitSet result = new BitSet();
+        for (String userId : users) {
+            Integer id = ids.get(userId);
+            if (id != null) {
+                result.set(id);
+            }
+        }
+        return result;
+    }
+}
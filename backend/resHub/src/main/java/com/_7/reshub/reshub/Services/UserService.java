@@ -1,8 +1,13 @@
 package com._7.reshub.reshub.Services;
 
 import com._7.reshub.reshub.Configs.DynamoDbConfig;
+import com._7.reshub.reshub.Models.InboxEntry;
+import com._7.reshub.reshub.Models.MessagePage;
 import com._7.reshub.reshub.Models.PasswordResetRequest;
+import com._7.reshub.reshub.Utils.DynamoBatches;
+import com._7.reshub.reshub.Utils.DynamoPages;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
@@ -13,10 +18,19 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
 //import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
 //import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 //import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
@@ -24,11 +38,16 @@ import java.time.Instant;
 import java.util.logging.Logger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.UUID;
 
 @Service
@@ -52,6 +71,37 @@ public class UserService {
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Autowired
+    private DiscoveryCatalogService discoveryCatalogService;
+
+    @Autowired
+    @Qualifier("dynamoPrefetchExecutor")
+    private ExecutorService dynamoPrefetchExecutor;
+
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+
+    @Autowired
+    private EventBroker eventBroker;
+
+    @Autowired
+    private RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private ChatSideEffectPipeline chatSideEffectPipeline;
+
+    @Autowired
+    private ChatOrderIndex chatOrderIndex;
+
+    @Autowired
+    private ProfileEdgeStore profileEdgeStore;
+
+    @Autowired
+    private ProfileCache profileCache;
+
+    @Autowired
+    private DisplayNameResolver displayNameResolver;
+
     /*
      * Handles retrieving the user ids of the given user's matches.
      */
@@ -61,21 +111,14 @@ public class UserService {
         GetItemRequest getItemRequest = GetItemRequest.builder()
                 .tableName(dynamoDbConfig.getUserProfilesTableName())
                 .key(key)
+                .projectionExpression(ProfileEdgeStore.MATCHES)
                 .build();
 
         GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
 
         if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
-            AttributeValue matchesAttribute = item.get("matches");
-
-            if (matchesAttribute != null && matchesAttribute.l() != null) {
-                List<String> matches = new ArrayList<>();
-                for (AttributeValue match : matchesAttribute.l()) {
-                    matches.add(match.s());
-                }
-                return matches;
-            }
+            // A string set, or a list on profiles that have not been migrated yet
+            return ProfileEdgeStore.values(response.item().get(ProfileEdgeStore.MATCHES));
         }
         return Collections.emptyList();
     }
@@ -165,106 +208,146 @@ public class UserService {
     }
 
     /*
-     * Handles adding each user to the other's matches table
+     * Handles adding each user to the other's matches table. Both match edges, the chat, both
+     * users' chat references and both match notifications are written in one TransactWriteItems
+     * call, so a match is either fully created or not at all.
      */
     public void doCreateMatch(String userId, String matchUserId) {
-        doAddToMatches(userId, matchUserId);
-        doAddToMatches(matchUserId, userId);
-        createChat(userId, matchUserId);
+        Map<String, String> names = displayNameResolver.resolve(List.of(userId, matchUserId));
 
-        // Send Match Notification
-        sendMatchNotification(userId, matchUserId);
-        sendMatchNotification(matchUserId, userId);
-    }
+        String chatId = UUID.randomUUID().toString();
+        String updatedAt = String.valueOf(System.currentTimeMillis());
+        String createdAt = Instant.now().toString();
+        Map<String, AttributeValue> chatItem = chatItem(chatId, userId, matchUserId, updatedAt);
+        // Each user is told who they matched with
+        Map<String, AttributeValue> userNotification =
+                matchNotificationItem(userId, names.getOrDefault(matchUserId, ""), createdAt);
+        Map<String, AttributeValue> matchUserNotification =
+                matchNotificationItem(matchUserId, names.getOrDefault(userId, ""), createdAt);
+
+        List<TransactWriteItem> writes = List.of(
+                addMatchEdges(userId, matchUserId, chatId),
+                addMatchEdges(matchUserId, userId, chatId),
+                TransactWriteItem.builder().put(Put.builder()
+                        .tableName(dynamoDbConfig.getChatsTableName())
+                        .item(chatItem)
+                        .conditionExpression("attribute_not_exists(chatId)")
+                        .build()).build(),
+                TransactWriteItem.builder().put(Put.builder()
+                        .tableName(dynamoDbConfig.getNotificationsTableName())
+                        .item(userNotification)
+                        .build()).build(),
+                TransactWriteItem.builder().put(Put.builder()
+                        .tableName(dynamoDbConfig.getNotificationsTableName())
+                        .item(matchUserNotification)
+                        .build()).build());
 
-    private void sendMatchNotification(String userId, String matchedUserId) {
-        
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-            GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .build();
+        try {
+            // The chat id doubles as the idempotency token for the SDK's own retries
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(writes)
+                    .clientRequestToken(chatId)
+                    .build());
+        } catch (TransactionCanceledException e) {
+            if (!profileEdgesFailed(e)) {
+                throw e;
+            }
+            // A profile is missing or still stores its edges as lists, which ADD cannot extend
+            if (!profileEdgeStore.convertToSets(userId) || !profileEdgeStore.convertToSets(matchUserId)) {
+                throw new IllegalStateException("Cannot match " + userId + " and " + matchUserId
+                        + ": profile not found");
+            }
+            dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                    .transactItems(writes)
+                    .build());
+        }
 
-            GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-            Map<String, AttributeValue> item = response.item();
-            String fullName = item.get("fullName").s();
-            // Construct notification payload
-            Map<String, AttributeValue> messageItem = new HashMap<>();
-            messageItem.put("userId", AttributeValue.builder().s(matchedUserId).build());
-            messageItem.put("type", AttributeValue.builder().s("match").build());
-            messageItem.put("message", AttributeValue.builder().s("New match with " + fullName).build());
-            messageItem.put("createdAt", AttributeValue.builder().s(Instant.now().toString()).build());
-            messageItem.put("isUnread", AttributeValue.builder().bool(true).build());
+        profileCache.invalidate(userId);
+        profileCache.invalidate(matchUserId);
+        chatOrderIndex.addChat(chatId, List.of(userId, matchUserId), updatedAt);
+
+        // Push the match to both users, each seeing the other as matchUserId
+        eventBroker.publish(userId, "match", Map.of("userId", userId, "matchUserId", matchUserId, "chatId", chatId));
+        eventBroker.publish(matchUserId, "match", Map.of("userId", matchUserId, "matchUserId", userId, "chatId", chatId));
 
-         // Insert the new notification into the 'notifications' table
-         PutItemRequest putMessageRequest = PutItemRequest.builder()
-         .tableName(dynamoDbConfig.getNotificationsTableName())
-         .item(messageItem)
-         .build();
-         dynamoDbClient.putItem(putMessageRequest);
+        publishNotification(userNotification);
+        publishNotification(matchUserNotification);
     }
 
     /*
-     * Handles adding the new match to the user1's document in the userProfiles
-     * table
+     * Adds the match and the chat to the user's edge sets, provided the profile exists and both
+     * attributes are already sets (see ProfileEdgeStore).
      */
-    public void doAddToMatches(String userId, String matchUserId) {
-        List<String> matches = new ArrayList<>(doGetUserMatches(userId));
+    private TransactWriteItem addMatchEdges(String userId, String matchUserId, String chatId) {
+        return TransactWriteItem.builder().update(Update.builder()
+                .tableName(dynamoDbConfig.getUserProfilesTableName())
+                .key(Map.of("userId", AttributeValue.builder().s(userId).build()))
+                .updateExpression("ADD #matches :match, #chats :chat")
+                .conditionExpression("attribute_exists(userId)"
+                        + " AND (attribute_not_exists(#matches) OR attribute_type(#matches, :ss))"
+                        + " AND (attribute_not_exists(#chats) OR attribute_type(#chats, :ss))")
+                .expressionAttributeNames(Map.of(
+                        "#matches", ProfileEdgeStore.MATCHES,
+                        "#chats", ProfileEdgeStore.CHATS))
+                .expressionAttributeValues(Map.of(
+                        ":match", AttributeValue.builder().ss(matchUserId).build(),
+                        ":chat", AttributeValue.builder().ss(chatId).build(),
+                        ":ss", AttributeValue.builder().s("SS").build()))
+                .build()).build();
+    }
 
-        if (!matches.contains(matchUserId)) {
-            matches.add(matchUserId);
+    /*
+     * True if the transaction was cancelled by the condition on one of the two profile updates,
+     * which are the first two writes of doCreateMatch.
+     */
+    private static boolean profileEdgesFailed(TransactionCanceledException e) {
+        if (!e.hasCancellationReasons()) {
+            return false;
+        }
+        List<CancellationReason> reasons = e.cancellationReasons();
+        for (int i = 0; i < Math.min(2, reasons.size()); i++) {
+            if ("ConditionalCheckFailed".equals(reasons.get(i).code())) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-        Map<String, AttributeValue> updateValues = Map.of(
-                ":newMatches", AttributeValue.builder().l(matches.stream()
-                        .map(match -> AttributeValue.builder().s(match).build())
-                        .collect(Collectors.toList())).build());
+    private static Map<String, AttributeValue> matchNotificationItem(String recipientId, String matchName,
+            String createdAt) {
+        Map<String, AttributeValue> messageItem = new HashMap<>();
+        messageItem.put("userId", AttributeValue.builder().s(recipientId).build());
+        messageItem.put("type", AttributeValue.builder().s("match").build());
+        messageItem.put("message", AttributeValue.builder().s("New match with " + matchName).build());
+        messageItem.put("createdAt", AttributeValue.builder().s(createdAt).build());
+        messageItem.put("isUnread", AttributeValue.builder().bool(true).build());
+        return messageItem;
+    }
 
-        UpdateItemRequest updateRequest = UpdateItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .updateExpression("SET matches = :newMatches")
-                .expressionAttributeValues(updateValues)
-                .build();
+    /*
+     * Pushes a notification that was just written to the notifications table to its recipient.
+     */
+    private void publishNotification(Map<String, AttributeValue> notification) {
+        eventBroker.publish(notification.get("userId").s(), "notification", Map.of(
+                "type", notification.get("type").s(),
+                "message", notification.get("message").s(),
+                "createdAt", notification.get("createdAt").s()));
+    }
 
-        dynamoDbClient.updateItem(updateRequest);
+    /*
+     * Handles adding the new match to the user1's document in the userProfiles
+     * table
+     */
+    public void doAddToMatches(String userId, String matchUserId) {
+        profileEdgeStore.add(userId, ProfileEdgeStore.MATCHES, matchUserId);
     }
 
     /*
-     * Handles retrieving the user ids of the given user's chatss.
+     * Handles retrieving the ids of the given user's chats, most recently updated first. Served
+     * from ChatOrderIndex, which reads the profile and the chats' updatedAt only the first time.
      */
     public List<String> retrieveUserChats(String userId) {
-        // Set up the key for querying the userProfiles table using email
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-
-        // Create the GetItemRequest for the userProfiles table
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName()) // Use userProfiles table
-                .key(key)
-                .build();
-
-        // Send the request to DynamoDB
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-
-        // Check if the item exists in the response
-        if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
-            AttributeValue chatsAttribute = item.get("chats"); // Retrieve the chats attribute
-
-            // If the chats attribute exists and is a list, extract the chat IDs
-            if (chatsAttribute != null && chatsAttribute.l() != null) {
-                List<String> chats = new ArrayList<>();
-                for (AttributeValue chat : chatsAttribute.l()) {
-                    chats.add(chat.s()); // Add each chat ID to the list
-                }
-                return getSortedChatIds(chats); // Return the list of chat IDs
-            }
-        }
-
-
-        // Return an empty list if no chats are found
-        return Collections.emptyList();
+        return chatOrderIndex.getChatIds(userId, () -> readChatIds(userId));
     }
 
     public List<String> getSortedChatIds(List<String> chatIds) {
@@ -386,57 +469,15 @@ public class UserService {
         return "No messages yet";
     }
 
-    // Method to find unread messages
+    // Method to find unread messages (reads the chat's materialized counter)
     public int getUnreadCount(String chatId, String userId) {
-        QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(dynamoDbConfig.getMessagesTableName())
-                .keyConditionExpression("chatId = :chatId")
-                .expressionAttributeValues(Map.of(":chatId", AttributeValue.builder().s(chatId).build()))
-                .build();
-
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
-        int count = 0;
-        for (Map<String, AttributeValue> item : queryResponse.items()) {
-            // Count messages that are unread and not sent by the current user
-            if (!item.get("userId").s().equals(userId)
-                    && item.containsKey("isUnread")
-                    && item.get("isUnread").bool()) {
-                count++;
-            }
-        }
-        return count;
+        return unreadCounterService.getUnreadCount(chatId, userId);
     }
 
-    // method to mark a message as read
+    // method to mark a message as read: moves the user's read watermark on the chat up to the
+    // newest message, a single write however many messages were unread
     public void markMessagesAsRead(String chatId, String userId) {
-        // Query the messages table for messages in the chat that are unread and not
-        // sent by userId
-        QueryRequest queryRequest = QueryRequest.builder()
-                .tableName(dynamoDbConfig.getMessagesTableName())
-                .keyConditionExpression("chatId = :chatId")
-                .expressionAttributeValues(Map.of(":chatId", AttributeValue.builder().s(chatId).build()))
-                .build();
-
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
-
-        for (Map<String, AttributeValue> messageItem : queryResponse.items()) {
-            // If the message is unread and not sent by the current user, mark it as read
-            if (!messageItem.get("userId").s().equals(userId) &&
-                    messageItem.containsKey("isUnread") && messageItem.get("isUnread").bool()) {
-                // Update the message item to set isUnread to false
-                Map<String, AttributeValue> key = Map.of("chatId", messageItem.get("chatId"), "createdAt",
-                        messageItem.get("createdAt"));
-                Map<String, AttributeValue> updateValues = Map.of(":isUnread",
-                        AttributeValue.builder().bool(false).build());
-                UpdateItemRequest updateRequest = UpdateItemRequest.builder()
-                        .tableName(dynamoDbConfig.getMessagesTableName())
-                        .key(key)
-                        .updateExpression("SET isUnread = :isUnread")
-                        .expressionAttributeValues(updateValues)
-                        .build();
-                dynamoDbClient.updateItem(updateRequest);
-            }
-        }
+        unreadCounterService.markRead(chatId, userId);
     }
 
     // Method to get other user's email and last message
@@ -471,6 +512,95 @@ public class UserService {
         return chatDetails;
     }
 
+    /*
+     * Returns the user's whole chat list, most recently updated first, with everything the chat
+     * list screen shows. Costs one GetItem for the chat ids plus one BatchGetItem each for the
+     * chats and the other participants' profiles, however many chats there are (up to 100 per
+     * batch). Unread counts come from the chat's unread_<userId> counter; chats created before
+     * the counter existed fall back to counting their messages.
+     */
+    public List<InboxEntry> getInbox(String userId) {
+        List<String> chatIds = readChatIds(userId);
+        if (chatIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Map<String, AttributeValue>> chats = DynamoBatches.getItems(dynamoDbClient,
+                dynamoDbConfig.getChatsTableName(), "chatId", chatIds, null, null);
+
+        Map<String, String> otherUserIds = new HashMap<>();
+        for (Map<String, AttributeValue> chat : chats) {
+            String otherUserId = otherParticipant(chat, userId);
+            if (otherUserId != null) {
+                otherUserIds.put(chat.get("chatId").s(), otherUserId);
+            }
+        }
+
+        Map<String, Map<String, AttributeValue>> profiles = new HashMap<>();
+        for (Map<String, AttributeValue> profile : DynamoBatches.getItems(dynamoDbClient,
+                dynamoDbConfig.getUserProfilesTableName(), "userId", otherUserIds.values(),
+                "userId, fullName, profilePicUrl", null)) {
+            profiles.put(profile.get("userId").s(), profile);
+        }
+
+        List<InboxEntry> inbox = new ArrayList<>(chats.size());
+        for (Map<String, AttributeValue> chat : chats) {
+            String chatId = chat.get("chatId").s();
+            String otherUserId = otherUserIds.get(chatId);
+            Map<String, AttributeValue> profile = otherUserId == null ? null : profiles.get(otherUserId);
+
+            AttributeValue unread = chat.get(UnreadCounterService.attributeName(userId));
+            int unreadCount = unread != null && unread.n() != null
+                    ? Math.max(0, Integer.parseInt(unread.n()))
+                    : unreadCounterService.backfill(chatId, userId,
+                            stringAttribute(chat, UnreadCounterService.lastReadAttribute(userId)));
+
+            inbox.add(new InboxEntry(
+                    chatId,
+                    otherUserId,
+                    stringAttribute(profile, "fullName"),
+                    stringAttribute(profile, "profilePicUrl"),
+                    stringAttribute(chat, "lastMessage"),
+                    stringAttribute(chat, "lastMessageSender"),
+                    stringAttribute(chat, "updatedAt"),
+                    unreadCount));
+        }
+
+        // Same order as getSortedChatIds: updatedAt descending, chats without one last
+        inbox.sort(Comparator.comparing(InboxEntry::getUpdatedAt,
+                Comparator.nullsLast(Comparator.<String>reverseOrder())));
+        return inbox;
+    }
+
+    private List<String> readChatIds(String userId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(dynamoDbConfig.getUserProfilesTableName())
+                .key(Map.of("userId", AttributeValue.builder().s(userId).build()))
+                .projectionExpression("chats")
+                .build());
+
+        return response.hasItem()
+                ? ProfileEdgeStore.values(response.item().get(ProfileEdgeStore.CHATS))
+                : Collections.emptyList();
+    }
+
+    private static String otherParticipant(Map<String, AttributeValue> chat, String userId) {
+        AttributeValue participants = chat.get("participants");
+        if (participants == null || !participants.hasL()) {
+            return null;
+        }
+        return participants.l().stream()
+                .map(AttributeValue::s)
+                .filter(id -> !id.equals(userId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String stringAttribute(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item == null ? null : item.get(name);
+        return value == null ? null : value.s();
+    }
+
     /*
      * Helper method to update the user's profile with the new chat ID.
      * 
@@ -479,34 +609,20 @@ public class UserService {
      * chatId: The ID of the chat to add
      */
     private void updateUserChats(String userId, String chatId) {
-        // Retrieve the user's profile from the 'userProfiles' table
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .build();
-
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-
-        if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
-            AttributeValue chatsAttribute = item.get("chats");
-
-            List<AttributeValue> chats = (chatsAttribute != null) ? new ArrayList<>(chatsAttribute.l())
-                    : new ArrayList<>();
-            chats.add(AttributeValue.builder().s(chatId).build());
-
-            // Update the user's profile with the new chat ID
-            Map<String, AttributeValue> updatedItem = new HashMap<>(item);
-            updatedItem.put("chats", AttributeValue.builder().l(chats).build());
+        profileEdgeStore.add(userId, ProfileEdgeStore.CHATS, chatId);
+    }
 
-            // Save the updated user profile back to the 'userProfiles' table
-            PutItemRequest updateUserRequest = PutItemRequest.builder()
-                    .tableName(dynamoDbConfig.getUserProfilesTableName())
-                    .item(updatedItem)
-                    .build();
-            dynamoDbClient.putItem(updateUserRequest);
-        }
+    private static Map<String, AttributeValue> chatItem(String chatId, String user1Id, String user2Id,
+            String updatedAt) {
+        Map<String, AttributeValue> chatItem = new HashMap<>();
+        chatItem.put("chatId", AttributeValue.builder().s(chatId).build());
+        chatItem.put("participants", AttributeValue.builder().l(
+                Arrays.asList(
+                        AttributeValue.builder().s(user1Id).build(),
+                        AttributeValue.builder().s(user2Id).build()))
+                .build());
+        chatItem.put("updatedAt", AttributeValue.builder().s(updatedAt).build());
+        return chatItem;
     }
 
     /*
@@ -525,14 +641,8 @@ public class UserService {
 
         // Step 2: Create a new chat item in the 'chats' table with participants and
         // initial data
-        Map<String, AttributeValue> chatItem = new HashMap<>();
-        chatItem.put("chatId", AttributeValue.builder().s(chatId).build());
-        chatItem.put("participants", AttributeValue.builder().l(
-                Arrays.asList(
-                        AttributeValue.builder().s(user1Id).build(),
-                        AttributeValue.builder().s(user2Id).build()))
-                .build());
-        chatItem.put("updatedAt", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis())).build());
+        String updatedAt = String.valueOf(System.currentTimeMillis());
+        Map<String, AttributeValue> chatItem = chatItem(chatId, user1Id, user2Id, updatedAt);
 
         System.out.println("Chat Item: " + chatItem); // Debugging line
 
@@ -544,6 +654,7 @@ public class UserService {
         try {
             dynamoDbClient.putItem(putChatRequest);
             System.out.println("Chat item inserted successfully.");
+            chatOrderIndex.addChat(chatId, List.of(user1Id, user2Id), updatedAt);
         } catch (Exception e) {
             System.err.println("Error inserting chat item: " + e.getMessage()); // Debugging error
             e.printStackTrace();
@@ -563,7 +674,9 @@ public class UserService {
     }
 
     /*
-     * Create a new message in a chat.
+     * Create a new message in a chat. Only the message itself is written before this returns;
+     * updating the chat, pushing the message to the participants and notifying the recipient
+     * run afterwards on the chat's side-effect pipeline, in message order.
      */
     public void createMessage(String chatId, String createdAt, String userId, String name, String text) {
         // Build the message item
@@ -583,34 +696,89 @@ public class UserService {
         try {
             dynamoDbClient.putItem(putMessageRequest);
             System.out.println("Message item inserted successfully.");
+            // Write through so readers of a hot chat see the message without going to DynamoDB
+            recentMessageCache.append(chatId, convertToSimpleMap(messageItem));
+            chatOrderIndex.touch(chatId, createdAt);
         } catch (Exception e) {
             System.err.println("Error inserting message item: " + e.getMessage());
             e.printStackTrace();
+            // Nothing to follow up on if the message was not stored
+            throw e;
         }
 
-        // Update the corresponding chat item with the new last message and timestamp
+        chatSideEffectPipeline.submit(chatId, "chatUpdate",
+                () -> updateChatForMessage(chatId, createdAt, userId, name, text));
+    }
+
+    /*
+     * Side effects of a new message: sets the chat's last message and updatedAt, bumps the
+     * recipient's unread counter, pushes the message to both participants and queues the
+     * recipient's notification.
+     */
+    private void updateChatForMessage(String chatId, String createdAt, String userId, String name, String text) {
+        String recipientId = getOtherUserId(chatId, userId);
+
+        // Update the corresponding chat item with the new last message and timestamp, and bump
+        // the recipient's unread counter in the same write. The bump is conditional so a retry of
+        // an update that already landed does not count the message twice, and a recipient who
+        // read the message before this update landed does not get it counted as unread.
         Map<String, AttributeValue> chatKey = Map.of("chatId", AttributeValue.builder().s(chatId).build());
-        Map<String, AttributeValue> updateValues = Map.of(
-                ":lastMessage", AttributeValue.builder().s(text).build(),
-                ":updatedAt", AttributeValue.builder().s(createdAt).build(),
-                ":lastMessageSender", AttributeValue.builder().s(userId).build());
-        UpdateItemRequest updateChatRequest = UpdateItemRequest.builder()
-                .tableName(dynamoDbConfig.getChatsTableName())
-                .key(chatKey)
-                .updateExpression(
-                        "SET lastMessage = :lastMessage, updatedAt = :updatedAt, lastMessageSender = :lastMessageSender")
-                .expressionAttributeValues(updateValues)
-                .build();
-        try {
-            dynamoDbClient.updateItem(updateChatRequest);
-            System.out.println("Chat last message updated successfully.");
-        } catch (Exception e) {
-            System.err.println("Error updating chat last message: " + e.getMessage());
-            e.printStackTrace();
+        Map<String, AttributeValue> updateValues = new HashMap<>();
+        updateValues.put(":lastMessage", AttributeValue.builder().s(text).build());
+        updateValues.put(":updatedAt", AttributeValue.builder().s(createdAt).build());
+        updateValues.put(":lastMessageSender", AttributeValue.builder().s(userId).build());
+        String setLastMessage =
+                "SET lastMessage = :lastMessage, updatedAt = :updatedAt, lastMessageSender = :lastMessageSender";
+        String newerThanChat = "attribute_not_exists(updatedAt) OR updatedAt < :updatedAt";
+
+        // Failures other than the conditions propagate so the pipeline retries the update. A bump
+        // skipped for a message that arrived out of order is recounted by the reconciler.
+        boolean updated = false;
+        if (recipientId != null) {
+            Map<String, AttributeValue> bumpValues = new HashMap<>(updateValues);
+            bumpValues.put(":one", AttributeValue.builder().n("1").build());
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(dynamoDbConfig.getChatsTableName())
+                        .key(chatKey)
+                        .updateExpression(setLastMessage + " ADD #unread :one")
+                        .conditionExpression("(" + newerThanChat + ") AND (attribute_not_exists(#lr) OR #lr < :updatedAt)")
+                        .expressionAttributeNames(Map.of(
+                                "#unread", UnreadCounterService.attributeName(recipientId),
+                                "#lr", UnreadCounterService.lastReadAttribute(recipientId)))
+                        .expressionAttributeValues(bumpValues)
+                        .build());
+                updated = true;
+            } catch (ConditionalCheckFailedException e) {
+                // Already applied, a newer message got there first, or the recipient has read
+                // this message; fall through to set the last message without the bump
+            }
         }
+        if (!updated) {
+            try {
+                dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                        .tableName(dynamoDbConfig.getChatsTableName())
+                        .key(chatKey)
+                        .updateExpression(setLastMessage)
+                        .conditionExpression(newerThanChat)
+                        .expressionAttributeValues(updateValues)
+                        .build());
+            } catch (ConditionalCheckFailedException e) {
+                // The chat already shows this message or a newer one
+            }
+        }
+        logger.fine("Chat last message updated for chat " + chatId);
+        unreadCounterService.markDirty(chatId);
+
+        // Push the message to both participants (the sender may be connected from other devices)
+        Map<String, String> event = Map.of("chatId", chatId, "createdAt", createdAt, "userId", userId,
+                "name", name, "text", text);
+        eventBroker.publish(userId, "message", event);
+        eventBroker.publish(recipientId, "message", event);
 
-        // Send Message Notification
-        sendMessageNotification(chatId, createdAt, userId, name, text);
+        // Send Message Notification, as its own step so a retry of it does not redo the update
+        chatSideEffectPipeline.submit(chatId, "messageNotification",
+                () -> sendMessageNotification(recipientId, createdAt, userId, name, text));
 
         /*
         // Get the other user's ID to notify them
@@ -642,19 +810,9 @@ public class UserService {
         }*/
     }
 
-    private void sendMessageNotification(String chatId, String createdAt, String userId, String name, String text) {
-        // Get the other user ID in the chat
-        String otherUserId = getOtherUserId(chatId, userId);
+    private void sendMessageNotification(String otherUserId, String createdAt, String userId, String name, String text) {
         if (otherUserId != null) {
-            Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-            GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .build();
-
-            GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-            Map<String, AttributeValue> item = response.item();
-            String fullName = item.get("fullName").s();
+            String fullName = displayNameResolver.resolve(userId);
 
             Map<String, AttributeValue> messageItem = new HashMap<>();
             messageItem.put("userId", AttributeValue.builder().s(otherUserId).build());
@@ -669,6 +827,7 @@ public class UserService {
                 .item(messageItem)
                 .build();
                 dynamoDbClient.putItem(putMessageRequest);
+                publishNotification(messageItem);
         }
     }
 
@@ -682,7 +841,6 @@ public class UserService {
                 ":isUnread", AttributeValue.builder().bool(true).build()
             ))
             .scanIndexForward(false) // Descending order: most recent first
-            .limit(1) // Only get the most recent one
             .build();
     
         //logger.info("DynamoDB Query Request:");
@@ -690,11 +848,15 @@ public class UserService {
         //logger.info("  Key Condition: "+ queryRequest.keyConditionExpression());
         //logger.info("  Expression Values: "+ queryRequest.expressionAttributeValues());
     
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
-        List<Map<String, AttributeValue>> items = queryResponse.items();
+        // Only get the most recent one. Limit is applied before the isUnread filter, so it would
+        // only ever look at the newest notification; findFirst stops paging at the first match.
+        Optional<Map<String, AttributeValue>> unread;
+        try (Stream<Map<String, AttributeValue>> items = DynamoPages.query(dynamoDbClient, queryRequest)) {
+            unread = items.findFirst();
+        }
     
-        if (!items.isEmpty()) {
-            Map<String, AttributeValue> mostRecent = items.get(0);
+        if (unread.isPresent()) {
+            Map<String, AttributeValue> mostRecent = unread.get();
             //if (mostRecent.containsKey("isUnread") && mostRecent.get("isUnread").bool()) {
                 // Update isUnread to false
                 Map<String, AttributeValue> key = Map.of(
@@ -746,7 +908,14 @@ public class UserService {
             return Collections.emptyList();
         }
 
+        // Short chats fit in the recent-message cache whole
+        List<Map<String, String>> cached = recentMessageCache.getAll(chatId);
+        if (cached != null) {
+            return cached;
+        }
+
         logger.info("Fetching messages for chatId: " + chatId);
+        long writeStamp = recentMessageCache.writeStamp(chatId);
 
         QueryRequest queryRequest = QueryRequest.builder()
                 .tableName(dynamoDbConfig.getMessagesTableName())
@@ -755,13 +924,86 @@ public class UserService {
                 .scanIndexForward(false)
                 .build();
 
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
+        List<Map<String, String>> messages = DynamoPages.query(dynamoDbClient, queryRequest, dynamoPrefetchExecutor)
+                .map(this::convertToSimpleMap) // Convert DynamoDB response to a simple Map<String, String>
+                .toList();
 
-        logger.info("getMessages: " + queryResponse.items().size()
+        logger.info("getMessages: " + messages.size()
                 + " items returned for chatId " + chatId);
-        return queryResponse.items().stream()
-                .map(this::convertToSimpleMap) // Convert DynamoDB response to a simple Map<String, String>
+        recentMessageCache.load(chatId, messages, true, writeStamp);
+        return messages;
+    }
+
+    /*
+     * Retrieves one page of the chat's messages, newest first: the limit messages created
+     * before the given createdAt (or the newest ones if before is null). Reads only that range
+     * of the sort key, so the cost does not grow with the length of the chat. Pages within the
+     * chat's recent-message buffer are served from memory; opening a chat that is not cached
+     * loads the buffer with one query.
+     */
+    public MessagePage getMessagePage(String chatId, int limit, String before) {
+        MessagePage cached = recentMessageCache.getPage(chatId, limit, before);
+        if (cached != null) {
+            return cached;
+        }
+        if (before == null && limit <= recentMessageCache.capacity()) {
+            loadRecentMessages(chatId);
+            cached = recentMessageCache.getPage(chatId, limit, null);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":chatId", AttributeValue.builder().s(chatId).build());
+        String keyCondition = "chatId = :chatId";
+        if (before != null) {
+            keyCondition += " AND createdAt < :before";
+            values.put(":before", AttributeValue.builder().s(before).build());
+        }
+
+        // One extra item tells us whether there is an older page without a second request
+        QueryRequest queryRequest = QueryRequest.builder()
+                .tableName(dynamoDbConfig.getMessagesTableName())
+                .keyConditionExpression(keyCondition)
+                .expressionAttributeValues(values)
+                .scanIndexForward(false)
+                .limit(limit + 1)
+                .build();
+
+        List<Map<String, AttributeValue>> items = dynamoDbClient.query(queryRequest).items();
+        boolean hasMore = items.size() > limit;
+        List<Map<String, AttributeValue>> page = hasMore ? items.subList(0, limit) : items;
+
+        List<Map<String, String>> messages = page.stream()
+                .map(this::convertToSimpleMap)
+                .toList();
+        String nextCursor = hasMore ? page.get(page.size() - 1).get("createdAt").s() : null;
+        return new MessagePage(messages, nextCursor);
+    }
+
+    /*
+     * Fills the chat's recent-message buffer with its newest messages, reading one more than
+     * fit to learn whether the buffer holds the whole chat.
+     */
+    private void loadRecentMessages(String chatId) {
+        int capacity = recentMessageCache.capacity();
+        long writeStamp = recentMessageCache.writeStamp(chatId);
+        QueryRequest queryRequest = QueryRequest.builder()
+                .tableName(dynamoDbConfig.getMessagesTableName())
+                .keyConditionExpression("chatId = :chatId")
+                .expressionAttributeValues(Map.of(":chatId", AttributeValue.builder().s(chatId).build()))
+                .scanIndexForward(false)
+                .limit(capacity + 1)
+                .build();
+
+        QueryResponse response = dynamoDbClient.query(queryRequest);
+        List<Map<String, String>> messages = response.items().stream()
+                .map(this::convertToSimpleMap)
                 .toList();
+        boolean complete = messages.size() <= capacity
+                && (!response.hasLastEvaluatedKey() || response.lastEvaluatedKey().isEmpty());
+        recentMessageCache.load(chatId, messages, complete, writeStamp);
     }
 
     private Map<String, String> convertToSimpleMap(Map<String, AttributeValue> item) {
@@ -776,33 +1018,29 @@ public class UserService {
         return result;
     }
 
+    /*
+     * Sets the user's lastTimeActive. An UpdateItem of that one attribute, so it cannot undo an
+     * edge change (a match or chat added to the profile) that lands between a read and a write.
+     */
     public void doUpdateLastTimeActive(String userId) {
         Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-        GetItemRequest getItemRequest = GetItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .build();
+        String timestamp = Instant.now().toString();
 
-        GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-
-        if (response.hasItem()) {
-            Map<String, AttributeValue> item = response.item();
-
-            String timestamp = Instant.now().toString();
-
-            Map<String, AttributeValue> updatedItem = new HashMap<>(item);
-            updatedItem.put("lastTimeActive", AttributeValue.builder().s(timestamp).build());
-
-            try {
-                PutItemRequest updateUserRequest = PutItemRequest.builder()
-                        .tableName(dynamoDbConfig.getUserProfilesTableName())
-                        .item(updatedItem)
-                        .build();
-
-                dynamoDbClient.putItem(updateUserRequest);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        try {
+            UpdateItemResponse response = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(dynamoDbConfig.getUserProfilesTableName())
+                    .key(key)
+                    .updateExpression("SET lastTimeActive = :timestamp")
+                    .conditionExpression("attribute_exists(userId)")
+                    .expressionAttributeValues(Map.of(":timestamp", AttributeValue.builder().s(timestamp).build()))
+                    .returnValues(ReturnValue.ALL_NEW)
+                    .build());
+            profileCache.put(response.attributes());
+            discoveryCatalogService.upsert(response.attributes());
+        } catch (ConditionalCheckFailedException e) {
+            // No profile yet, nothing to update
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
@@ -816,57 +1054,18 @@ public class UserService {
         deleteChat(chatId);
 
         deleteMessagesByChatId(chatId);
+        recentMessageCache.invalidate(chatId);
+        chatOrderIndex.removeChat(chatId);
 
     }
 
     private void removeFromMatches(String userId, String matchUserId) {
-        List<String> matches = new ArrayList<>(doGetUserMatches(userId));
-    
-        if (matches.contains(matchUserId)) {
-            matches.remove(matchUserId);
-        }
-    
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-        Map<String, AttributeValue> updateValues = Map.of(
-                ":newMatches", AttributeValue.builder().l(matches.stream()
-                        .map(match -> AttributeValue.builder().s(match).build())
-                        .collect(Collectors.toList())).build());
-    
-        UpdateItemRequest updateRequest = UpdateItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .updateExpression("SET matches = :newMatches")
-                .expressionAttributeValues(updateValues)
-                .build();
-    
-        dynamoDbClient.updateItem(updateRequest);
+        profileEdgeStore.remove(userId, ProfileEdgeStore.MATCHES, matchUserId);
     }
 
     private void removeChatFromUser(String userId, String chatId) {
-        // Get the current chats for the user
-        List<String> chats = retrieveUserChats(userId);
-    
-        // Remove the chatId if it exists
-        if (chats.contains(chatId)) {
-            chats.remove(chatId);
-        }
-    
-        // Update the user's chats list in the table
-        Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-        Map<String, AttributeValue> updateValues = Map.of(
-                ":newChats", AttributeValue.builder().l(chats.stream()
-                        .map(chat -> AttributeValue.builder().s(chat).build())
-                        .collect(Collectors.toList())).build());
-    
-        UpdateItemRequest updateRequest = UpdateItemRequest.builder()
-                .tableName(dynamoDbConfig.getUserProfilesTableName())
-                .key(key)
-                .updateExpression("SET chats = :newChats")
-                .expressionAttributeValues(updateValues)
-                .build();
-    
         try {
-            dynamoDbClient.updateItem(updateRequest);
+            profileEdgeStore.remove(userId, ProfileEdgeStore.CHATS, chatId);
             System.out.println("Chat ID removed from user profile: " + userId);
         } catch (Exception e) {
             System.err.println("Error removing chat from user profile: " + e.getMessage());
@@ -900,10 +1099,8 @@ public class UserService {
             ))
             .build();
     
-        QueryResponse queryResponse = dynamoDbClient.query(queryRequest);
-    
         // Iterate through the results and delete each message
-        for (Map<String, AttributeValue> message : queryResponse.items()) {
+        DynamoPages.query(dynamoDbClient, queryRequest, dynamoPrefetchExecutor).forEach(message -> {
             Map<String, AttributeValue> key = new HashMap<>();
             key.put("chatId", message.get("chatId"));  // Partition key
             key.put("createdAt", message.get("createdAt"));  // Sort key (required)
@@ -919,7 +1116,7 @@ public class UserService {
             } catch (Exception e) {
                 System.err.println("Failed to delete message: " + e.getMessage());
             }
-        }
+        });
     }
 
       /**
@@ -941,9 +1138,7 @@ public void deleteUserChats(String userId) {
                 .expressionAttributeValues(Map.of(":chatId", AttributeValue.builder().s(chatId).build()))
                 .build();
             
-            QueryResponse messagesResponse = dynamoDbClient.query(queryMessages);
-            
-            for (Map<String, AttributeValue> message : messagesResponse.items()) {
+            DynamoPages.query(dynamoDbClient, queryMessages, dynamoPrefetchExecutor).forEach(message -> {
                 Map<String, AttributeValue> messageKey = new HashMap<>();
                 messageKey.put("chatId", message.get("chatId"));
                 messageKey.put("createdAt", message.get("createdAt"));
@@ -954,7 +1149,7 @@ public void deleteUserChats(String userId) {
                     .build();
                 
                 dynamoDbClient.deleteItem(deleteMessageRequest);
-            }
+            });
             
             // Delete the chat record
             Map<String, AttributeValue> chatKey = new HashMap<>();
@@ -966,6 +1161,8 @@ public void deleteUserChats(String userId) {
                 .build();
             
             dynamoDbClient.deleteItem(deleteChatRequest);
+            recentMessageCache.invalidate(chatId);
+            chatOrderIndex.removeChat(chatId);
         }
         
         // Delete chat entries from user_chats table
@@ -975,9 +1172,7 @@ public void deleteUserChats(String userId) {
             .expressionAttributeValues(Map.of(":userId", AttributeValue.builder().s(userId).build()))
             .build();
         
-        QueryResponse userChatsResponse = dynamoDbClient.query(queryUserChats);
-        
-        for (Map<String, AttributeValue> userChat : userChatsResponse.items()) {
+        DynamoPages.query(dynamoDbClient, queryUserChats, dynamoPrefetchExecutor).forEach(userChat -> {
             Map<String, AttributeValue> userChatKey = new HashMap<>();
             userChatKey.put("userId", userChat.get("userId"));
             userChatKey.put("chatId", userChat.get("chatId"));
@@ -988,7 +1183,7 @@ public void deleteUserChats(String userId) {
                 .build();
             
             dynamoDbClient.deleteItem(deleteUserChatRequest);
-        }
+        });
     } catch (Exception e) {
         throw new RuntimeException("Failed to delete user chats: " + e.getMessage(), e);
     }
@@ -1041,12 +1236,6 @@ public void deleteUserMatches(String userId) {
  * @return true if the user exists, false otherwise
  */
 public boolean userExists(String userId) {
-    Map<String, AttributeValue> key = Map.of("userId", AttributeValue.builder().s(userId).build());
-    GetItemRequest getItemRequest = GetItemRequest.builder()
-            .tableName(dynamoDbConfig.getUserProfilesTableName())
-            .key(key)
-            .build();
-    GetItemResponse response = dynamoDbClient.getItem(getItemRequest);
-    return response.hasItem();
+    return profileCache.get(userId) != null;
 }   
 }
\ No newline at end of file
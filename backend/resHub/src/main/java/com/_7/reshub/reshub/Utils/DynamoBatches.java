@@ -0,0 +1,82 @@
+package com._7.reshub.reshub.Utils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * BatchGetItem by a single string key, with the chunking and UnprocessedKeys handling the raw
+ * call leaves to the caller. One call covers up to 100 keys, so any list of up to 100 items is one
+ * round trip (plus retries when DynamoDB throttles part of the batch).
+ */
+public final class DynamoBatches {
+
+    // BatchGetItem accepts at most 100 keys per call
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 25;
+
+    private DynamoBatches() {
+    }
+
+    /*
+     * Returns the items whose keyName attribute is one of the given ids, in no particular order.
+     * Ids with no item are simply absent from the result. projection may be null to read whole
+     * items; it is a ProjectionExpression and must include keyName if the caller needs it.
+     */
+    public static List<Map<String, AttributeValue>> getItems(DynamoDbClient client, String tableName, String keyName,
+            Collection<String> ids, String projection, Map<String, String> attributeNames) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Map<String, AttributeValue>> items = new ArrayList<>(distinct.size());
+
+        for (int start = 0; start < distinct.size(); start += MAX_BATCH_SIZE) {
+            List<Map<String, AttributeValue>> keys = new ArrayList<>();
+            for (String id : distinct.subList(start, Math.min(distinct.size(), start + MAX_BATCH_SIZE))) {
+                keys.add(Map.of(keyName, AttributeValue.builder().s(id).build()));
+            }
+
+            KeysAndAttributes.Builder request = KeysAndAttributes.builder().keys(keys);
+            if (projection != null) {
+                request.projectionExpression(projection);
+            }
+            if (attributeNames != null && !attributeNames.isEmpty()) {
+                request.expressionAttributeNames(attributeNames);
+            }
+
+            Map<String, KeysAndAttributes> pending = Map.of(tableName, request.build());
+            for (int attempt = 0; !pending.isEmpty(); attempt++) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw new IllegalStateException("BatchGetItem on " + tableName
+                            + " still had unprocessed keys after " + MAX_ATTEMPTS + " attempts");
+                }
+                if (attempt > 0) {
+                    sleep(BASE_BACKOFF_MS << (attempt - 1));
+                }
+
+                BatchGetItemResponse response = client.batchGetItem(BatchGetItemRequest.builder()
+                        .requestItems(pending)
+                        .build());
+                items.addAll(response.responses().getOrDefault(tableName, List.of()));
+                pending = response.hasUnprocessedKeys() ? response.unprocessedKeys() : Map.of();
+            }
+        }
+
+        return items;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com._7.reshub.reshub.Utils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.Select;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * Lazy, complete iteration over Query and Scan results. A single Query or Scan call returns at
+ * most 1 MB; these streams follow LastEvaluatedKey and fetch the next page only when the caller
+ * has consumed the current one, so results are complete and at most one or two pages are held
+ * in memory. Short-circuiting operations (findFirst, limit, anyMatch) stop fetching early.
+ *
+ * When a prefetch executor is given, the next page is requested in the background as soon as the
+ * current one arrives, overlapping the round trip with the caller's per-item work (deletes, for
+ * example). Closing the stream cancels an outstanding prefetch.
+ *
+ * The request's Limit, if any, is the page size, not a cap on the total.
+ */
+public final class DynamoPages {
+
+    private DynamoPages() {
+    }
+
+    public static Stream<Map<String, AttributeValue>> query(DynamoDbClient client, QueryRequest request) {
+        return query(client, request, null);
+    }
+
+    public static Stream<Map<String, AttributeValue>> query(DynamoDbClient client, QueryRequest request,
+            Executor prefetchExecutor) {
+        return stream(startKey -> {
+            QueryResponse response = client.query(request.toBuilder().exclusiveStartKey(startKey).build());
+            return new Page(response.items(), response.hasLastEvaluatedKey() ? response.lastEvaluatedKey() : null);
+        }, request.hasExclusiveStartKey() ? request.exclusiveStartKey() : null, prefetchExecutor);
+    }
+
+    /*
+     * Counts the items matching the query (after its filter) across all pages with Select COUNT,
+     * so no item data is transferred.
+     */
+    public static long count(DynamoDbClient client, QueryRequest request) {
+        long count = 0;
+        Map<String, AttributeValue> startKey = request.hasExclusiveStartKey() ? request.exclusiveStartKey() : null;
+
+        do {
+            QueryResponse response = client.query(request.toBuilder()
+                    .select(Select.COUNT)
+                    .exclusiveStartKey(startKey)
+                    .build());
+            count += response.count() == null ? 0 : response.count();
+            startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey()
+                    : null;
+        } while (startKey != null);
+
+        return count;
+    }
+
+    public static Stream<Map<String, AttributeValue>> scan(DynamoDbClient client, ScanRequest request) {
+        return scan(client, request, null);
+    }
+
+    public static Stream<Map<String, AttributeValue>> scan(DynamoDbClient client, ScanRequest request,
+            Executor prefetchExecutor) {
+        return stream(startKey -> {
+            ScanResponse response = client.scan(request.toBuilder().exclusiveStartKey(startKey).build());
+            return new Page(response.items(), response.hasLastEvaluatedKey() ? response.lastEvaluatedKey() : null);
+        }, request.hasExclusiveStartKey() ? request.exclusiveStartKey() : null, prefetchExecutor);
+    }
+
+    private static Stream<Map<String, AttributeValue>> stream(Function<Map<String, AttributeValue>, Page> fetcher,
+            Map<String, AttributeValue> startKey, Executor prefetchExecutor) {
+        ItemIterator iterator = new ItemIterator(fetcher, startKey, prefetchExecutor);
+        Spliterator<Map<String, AttributeValue>> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::cancelPrefetch);
+    }
+
+    private static final class Page {
+        private final List<Map<String, AttributeValue>> items;
+        private final Map<String, AttributeValue> lastEvaluatedKey;
+
+        private Page(List<Map<String, AttributeValue>> items, Map<String, AttributeValue> lastEvaluatedKey) {
+            this.items = items;
+            this.lastEvaluatedKey = lastEvaluatedKey == null || lastEvaluatedKey.isEmpty() ? null : lastEvaluatedKey;
+        }
+    }
+
+    private static final class ItemIterator implements Iterator<Map<String, AttributeValue>> {
+        private final Function<Map<String, AttributeValue>, Page> fetcher;
+        private final Executor prefetchExecutor;
+
+        private Iterator<Map<String, AttributeValue>> items = Collections.emptyIterator();
+        private Map<String, AttributeValue> nextStartKey;
+        private boolean lastPage = false;
+        private CompletableFuture<Page> prefetched;
+
+        private ItemIterator(Function<Map<String, AttributeValue>, Page> fetcher,
+                Map<String, AttributeValue> startKey, Executor prefetchExecutor) {
+            this.fetcher = fetcher;
+            this.nextStartKey = startKey;
+            this.prefetchExecutor = prefetchExecutor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Pages can be empty (a filter removed every item) without being the last one
+            while (!items.hasNext()) {
+                if (lastPage) {
+                    return false;
+                }
+                advance();
+            }
+            return true;
+        }
+
+        @Override
+        public Map<String, AttributeValue> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return items.next();
+        }
+
+        private void advance() {
+            Page page = prefetched != null ? join(prefetched) : fetcher.apply(nextStartKey);
+            prefetched = null;
+
+            items = page.items.iterator();
+            nextStartKey = page.lastEvaluatedKey;
+            lastPage = nextStartKey == null;
+
+            if (!lastPage && prefetchExecutor != null) {
+                Map<String, AttributeValue> startKey = nextStartKey;
+                try {
+                    prefetched = CompletableFuture.supplyAsync(() -> fetcher.apply(startKey), prefetchExecutor);
+                } catch (RejectedExecutionException e) {
+                    // The pool is busy; the next page is fetched here when it is needed
+                }
+            }
+        }
+
+        private void cancelPrefetch() {
+            if (prefetched != null) {
+                prefetched.cancel(false);
+                prefetched = null;
+            }
+        }
+
+        private static Page join(CompletableFuture<Page> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                // Surface the DynamoDB exception the way a synchronous call would
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
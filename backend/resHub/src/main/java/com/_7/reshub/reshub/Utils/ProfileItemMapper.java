@@ -0,0 +1,143 @@
+package com._7.reshub.reshub.Utils;
+
+import com._7.reshub.reshub.Models.Profile;
+import com._7.reshub.reshub.Models.ProfileCard;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+ * Converts items from the profiles table into Profile and ProfileCard objects. Shared by the
+ * profile service and the discovery catalog so both build profiles the same way.
+ */
+public final class ProfileItemMapper {
+
+    private ProfileItemMapper() {
+    }
+
+    /*
+     * Attributes the discovery catalog reads: everything on a ProfileCard, the roommate
+     * preferences used for compatibility ranking and the blocked list. Used as the scan's
+     * ProjectionExpression so heavier attributes (matches, chats, ...) are never transferred.
+     */
+    public static final List<String> DISCOVERY_ATTRIBUTES = List.of(
+        "userId", "fullName", "gender", "major", "minor", "age", "residence", "hobbies",
+        "graduationYear", "bio", "lastTimeActive", "profilePicUrl",
+        "smokingStatus", "cleanlinessLevel", "sleepSchedule", "guestFrequency", "hasPets",
+        "noiseLevel", "sharingCommonItems", "dietaryPreference",
+        "roommateSmokingPreference", "roommateCleanlinessLevel", "roommateSleepSchedule",
+        "roommateGuestFrequency", "roommatePetPreference", "roommateNoiseTolerance",
+        "roommateSharingCommonItems", "roommateDietaryPreference",
+        "blockedUsers"
+    );
+
+    public static Profile toProfile(Map<String, AttributeValue> item) {
+        return new Profile(
+            string(item, "userId"),
+            string(item, "fullName"),
+            string(item, "gender"),
+            string(item, "major"),
+            string(item, "minor"),
+            number(item, "age"),
+            string(item, "residence"),
+            stringList(item, "hobbies"),
+            string(item, "graduationYear"),
+            string(item, "bio"),
+            instant(item, "lastTimeActive"),
+            string(item, "profilePicUrl"),
+            string(item, "smokingStatus"),
+            string(item, "cleanlinessLevel"),
+            string(item, "sleepSchedule"),
+            string(item, "guestFrequency"),
+            string(item, "hasPets"),
+            string(item, "noiseLevel"),
+            string(item, "sharingCommonItems"),
+            string(item, "dietaryPreference"),
+            string(item, "allergies"),
+            string(item, "roommateSmokingPreference"),
+            string(item, "roommateCleanlinessLevel"),
+            string(item, "roommateSleepSchedule"),
+            string(item, "roommateGuestFrequency"),
+            string(item, "roommatePetPreference"),
+            string(item, "roommateNoiseTolerance"),
+            string(item, "roommateSharingCommonItems"),
+            string(item, "roommateDietaryPreference")
+        );
+    }
+
+    public static ProfileCard toProfileCard(Map<String, AttributeValue> item) {
+        return new ProfileCard(
+            string(item, "userId"),
+            string(item, "fullName"),
+            string(item, "gender"),
+            string(item, "major"),
+            string(item, "minor"),
+            number(item, "age"),
+            string(item, "residence"),
+            stringList(item, "hobbies"),
+            string(item, "graduationYear"),
+            string(item, "bio"),
+            instant(item, "lastTimeActive"),
+            string(item, "profilePicUrl"),
+            string(item, "smokingStatus"),
+            string(item, "cleanlinessLevel"),
+            string(item, "sleepSchedule"),
+            string(item, "guestFrequency"),
+            string(item, "hasPets"),
+            string(item, "noiseLevel"),
+            string(item, "sharingCommonItems"),
+            string(item, "dietaryPreference")
+        );
+    }
+
+    // The readers below return shared defaults for missing attributes instead of building a
+    // placeholder AttributeValue for each one
+
+    private static String string(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.s() == null ? "" : value.s();
+    }
+
+    private static int number(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.n() == null ? 0 : Integer.parseInt(value.n());
+    }
+
+    private static Instant instant(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value == null || value.s() == null || value.s().isEmpty() ? null : Instant.parse(value.s());
+    }
+
+    private static List<String> stringList(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        if (value == null || !value.hasL() || value.l().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>(value.l().size());
+        for (AttributeValue element : value.l()) {
+            result.add(element.s());
+        }
+        return result;
+    }
+
+    /*
+     * Reads the blockedUsers list attribute of a profile item.
+     */
+    public static List<String> toBlockedUsers(Map<String, AttributeValue> item) {
+        AttributeValue blockedUsersAttribute = item.get("blockedUsers");
+
+        if (blockedUsersAttribute != null && blockedUsersAttribute.hasL()) {
+            return blockedUsersAttribute.l().stream()
+                    .map(AttributeValue::s)
+                    .collect(Collectors.toList());
+        }
+        return Collections.emptyList();
+    }
+}
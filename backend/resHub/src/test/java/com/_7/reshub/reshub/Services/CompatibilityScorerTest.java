@@ -0,0 +1,33 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Models.Profile;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompatibilityScorerTest {
+
+    @Test
+    void noiseToleranceScoresTheSameForSettingsAndOnboardingSpellings() {
+        CompatibilityScorer scorer = new CompatibilityScorer();
+        scorer.set(0, noiseProfile("settings", null, "Moderate Noise"));
+        scorer.set(1, noiseProfile("onboarding", null, "Moderate"));
+        scorer.set(2, noiseProfile("unset", null, null));
+        scorer.set(3, noiseProfile("candidate", "Moderate Noise", null));
+        scorer.set(4, noiseProfile("candidate2", "Moderate", null));
+
+        assertEquals(scorer.score(1, 3), scorer.score(0, 3));
+        // A recognised tolerance scores the dimension instead of falling back to neutral
+        assertTrue(scorer.score(0, 3) > scorer.score(2, 3));
+        // Both spellings of the trait encode to the same value
+        assertEquals(scorer.score(0, 3), scorer.score(0, 4));
+    }
+
+    private static Profile noiseProfile(String userId, String noiseLevel, String roommateNoiseTolerance) {
+        return new Profile(userId, null, null, null, null, 20, null, null, null, null, null, null,
+                null, null, null, null, null, noiseLevel, null, null, null,
+                null, null, null, null, null, roommateNoiseTolerance, null, null);
+    }
+}
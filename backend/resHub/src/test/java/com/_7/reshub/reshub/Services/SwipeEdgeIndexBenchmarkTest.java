@@ -0,0 +1,142 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Checks that a mutual-swipe check costs the same no matter how many right swipes the swiper has
+ * made, for positive and negative answers alike, and that neither goes back to the swipe log once
+ * the swiper is loaded. Runs against a stubbed DynamoDbClient, so no AWS access is needed.
+ *
+ * Wall-clock timings are too noisy for the default suite, so this only runs with the perf
+ * profile: mvn test -Pperf
+ */
+@Tag("perf")
+class SwipeEdgeIndexBenchmarkTest {
+
+    private static final int[] HISTORY_SIZES = { 10, 1_000, 100_000 };
+    private static final int WARMUP_LOOKUPS = 200_000;
+    private static final int MEASURED_LOOKUPS = 1_000_000;
+
+    @Test
+    void lookupLatencyDoesNotGrowWithSwipeHistory() {
+        double[] hitNanos = new double[HISTORY_SIZES.length];
+        double[] missNanos = new double[HISTORY_SIZES.length];
+
+        for (int i = 0; i < HISTORY_SIZES.length; i++) {
+            int historySize = HISTORY_SIZES[i];
+            AtomicInteger queries = new AtomicInteger();
+            SwipeEdgeIndex index = newIndex("swiper", historySize, queries);
+
+            // The first lookup loads the swiper's history; that one-off cost is reported, not asserted
+            long loadStart = System.nanoTime();
+            assertTrue(index.hasSwipedRight("swiper", "user0"));
+            long loadNanos = System.nanoTime() - loadStart;
+            assertTrue(index.hasSwipedRight("swiper", "user" + (historySize - 1)));
+            assertFalse(index.hasSwipedRight("swiper", "stranger"));
+
+            String[] hits = new String[1024];
+            String[] misses = new String[1024];
+            for (int t = 0; t < hits.length; t++) {
+                hits[t] = "user" + (t * 7919 % historySize);
+                misses[t] = "stranger" + t;
+            }
+
+            measure(index, hits, WARMUP_LOOKUPS, true);
+            measure(index, misses, WARMUP_LOOKUPS, false);
+            hitNanos[i] = measure(index, hits, MEASURED_LOOKUPS, true) / (double) MEASURED_LOOKUPS;
+            missNanos[i] = measure(index, misses, MEASURED_LOOKUPS, false) / (double) MEASURED_LOOKUPS;
+
+            // Everything after the load was answered from memory
+            assertEquals(1, queries.get());
+
+            System.out.printf("SwipeEdgeIndex: %,d right swipes -> load %.1f ms, %.1f ns per hit, %.1f ns per miss%n",
+                    historySize, loadNanos / 1e6, hitNanos[i], missNanos[i]);
+        }
+
+        // A per-swipe scan would be ~10,000x slower at the largest size; allow generous noise for cache effects
+        assertFlat("hit", hitNanos);
+        assertFlat("miss", missNanos);
+    }
+
+    private static void assertFlat(String kind, double[] nanosPerLookup) {
+        double smallest = nanosPerLookup[0];
+        double largest = nanosPerLookup[nanosPerLookup.length - 1];
+        assertTrue(largest < smallest * 10 + 500,
+                "Lookup latency (" + kind + ") grew with history size: " + smallest + " ns vs " + largest + " ns");
+    }
+
+    private static long measure(SwipeEdgeIndex index, String[] targets, int lookups, boolean expected) {
+        int matches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (index.hasSwipedRight("swiper", targets[i & (targets.length - 1)]) == expected) {
+                matches++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(lookups, matches);
+        return elapsed;
+    }
+
+    /*
+     * Builds an index whose swipe log holds historySize right swipes by the swiper, counting the
+     * Queries made against it.
+     */
+    private static SwipeEdgeIndex newIndex(String swiperId, int historySize, AtomicInteger queries) {
+        long expiration = Instant.now().plusSeconds(3600).getEpochSecond();
+        List<Map<String, AttributeValue>> items = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            items.add(Map.of(
+                    "swipedOnUserId", AttributeValue.builder().s("user" + i).build(),
+                    "expirationTimestamp", AttributeValue.builder().n(Long.toString(expiration)).build()));
+        }
+
+        DynamoDbClient swipeLog = new DynamoDbClient() {
+            @Override
+            public QueryResponse query(QueryRequest queryRequest) {
+                queries.incrementAndGet();
+                String userId = queryRequest.expressionAttributeValues().get(":userId").s();
+                return QueryResponse.builder()
+                        .items(userId.equals(swiperId) ? items : List.of())
+                        .build();
+            }
+
+            @Override
+            public String serviceName() {
+                return "dynamodb";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        SwipeEdgeIndex index = new SwipeEdgeIndex();
+        ReflectionTestUtils.setField(index, "dynamoDbConfig", new DynamoDbConfig());
+        ReflectionTestUtils.setField(index, "dynamoDbClient", swipeLog);
+        ReflectionTestUtils.setField(index, "latencyMetrics", new LatencyMetrics());
+        // Longer than the run, as the default swipes.edges.recheck.ms is between real checks
+        ReflectionTestUtils.setField(index, "recheckMillis", 60_000L);
+        return index;
+    }
+}
@@ -0,0 +1,128 @@
+package com._7.reshub.reshub.Services;
+
+import com._7.reshub.reshub.Configs.DynamoDbConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Runs against a stubbed DynamoDbClient whose swipe log holds the given swiper's right swipes, so
+ * no AWS access is needed.
+ */
+class SwipeEdgeIndexTest {
+
+    @Test
+    void recordAndRemoveAreVisibleImmediately() {
+        SwipeEdgeIndex index = newIndex("swiper", new CopyOnWriteArrayList<>());
+        long expiration = Instant.now().plusSeconds(3600).getEpochSecond();
+
+        assertFalse(index.hasSwipedRight("swiper", "other"));
+        index.recordRightSwipe("swiper", "other", expiration);
+        assertTrue(index.hasSwipedRight("swiper", "other"));
+        assertFalse(index.hasSwipedRight("other", "swiper"));
+
+        index.removeRightSwipe("swiper", "other");
+        assertFalse(index.hasSwipedRight("swiper", "other"));
+
+        index.recordRightSwipe("swiper", "expired", Instant.now().minusSeconds(1).getEpochSecond());
+        assertFalse(index.hasSwipedRight("swiper", "expired"));
+    }
+
+    @Test
+    void loadsRightSwipesFromTheSwipeLog() {
+        List<Map<String, AttributeValue>> swipeLog = new CopyOnWriteArrayList<>();
+        swipeLog.add(rightSwipe("liked", Instant.now().plusSeconds(3600)));
+        SwipeEdgeIndex index = newIndex("swiper", swipeLog);
+
+        assertTrue(index.hasSwipedRight("swiper", "liked"));
+        assertFalse(index.hasSwipedRight("swiper", "stranger"));
+    }
+
+    @Test
+    void expiredLoadedSwipeDoesNotCount() {
+        List<Map<String, AttributeValue>> swipeLog = new CopyOnWriteArrayList<>();
+        swipeLog.add(rightSwipe("old", Instant.now().minusSeconds(1)));
+        SwipeEdgeIndex index = newIndex("swiper", swipeLog);
+
+        assertFalse(index.hasSwipedRight("swiper", "old"));
+    }
+
+    @Test
+    void seesSwipesWrittenThroughAnotherInstance() {
+        List<Map<String, AttributeValue>> swipeLog = new CopyOnWriteArrayList<>();
+        SwipeEdgeIndex index = newIndex("swiper", swipeLog, new AtomicInteger());
+        ReflectionTestUtils.setField(index, "recheckMillis", 0L);
+
+        assertFalse(index.hasSwipedRight("swiper", "other"));
+        // Written to the table without going through this index
+        swipeLog.add(rightSwipe("other", Instant.now().plusSeconds(3600)));
+        assertTrue(index.hasSwipedRight("swiper", "other"));
+    }
+
+    @Test
+    void negativeAnswersAfterALoadDoNotQueryAgain() {
+        AtomicInteger queries = new AtomicInteger();
+        SwipeEdgeIndex index = newIndex("swiper", new CopyOnWriteArrayList<>(), queries);
+        ReflectionTestUtils.setField(index, "recheckMillis", 60_000L);
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(index.hasSwipedRight("swiper", "other" + i));
+        }
+        // Only the initial load
+        assertEquals(1, queries.get());
+    }
+
+    private static Map<String, AttributeValue> rightSwipe(String swipedOnUserId, Instant expiration) {
+        return Map.of(
+                "swipedOnUserId", AttributeValue.builder().s(swipedOnUserId).build(),
+                "expirationTimestamp", AttributeValue.builder().n(Long.toString(expiration.getEpochSecond())).build());
+    }
+
+    private static SwipeEdgeIndex newIndex(String swiperId, List<Map<String, AttributeValue>> swipeLog) {
+        return newIndex(swiperId, swipeLog, new AtomicInteger());
+    }
+
+    private static SwipeEdgeIndex newIndex(String swiperId, List<Map<String, AttributeValue>> swipeLog,
+            AtomicInteger queries) {
+        DynamoDbClient client = new DynamoDbClient() {
+            @Override
+            public QueryResponse query(QueryRequest queryRequest) {
+                queries.incrementAndGet();
+                String userId = queryRequest.expressionAttributeValues().get(":userId").s();
+                return QueryResponse.builder()
+                        .items(userId.equals(swiperId) ? List.copyOf(swipeLog) : List.of())
+                        .build();
+            }
+
+            @Override
+            public String serviceName() {
+                return "dynamodb";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        SwipeEdgeIndex index = new SwipeEdgeIndex();
+        ReflectionTestUtils.setField(index, "dynamoDbConfig", new DynamoDbConfig());
+        ReflectionTestUtils.setField(index, "dynamoDbClient", client);
+        ReflectionTestUtils.setField(index, "latencyMetrics", new LatencyMetrics());
+        return index;
+    }
+}